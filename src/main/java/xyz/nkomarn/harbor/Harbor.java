@@ -2,21 +2,29 @@ package xyz.nkomarn.harbor;
 
 import com.earth2me.essentials.Essentials;
 import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.api.AFKProvider;
+import xyz.nkomarn.harbor.api.BatchExclusionProvider;
 import xyz.nkomarn.harbor.api.ExclusionProvider;
 import xyz.nkomarn.harbor.api.LogicType;
+import xyz.nkomarn.harbor.api.WorldSleepSnapshot;
 import xyz.nkomarn.harbor.command.ForceSkipCommand;
 import xyz.nkomarn.harbor.command.HarborCommand;
 import xyz.nkomarn.harbor.folia.SchedulerUtils;
+import xyz.nkomarn.harbor.folia.SyncBridge;
 import xyz.nkomarn.harbor.listener.BedListener;
 import xyz.nkomarn.harbor.task.Checker;
 import xyz.nkomarn.harbor.util.Config;
+import xyz.nkomarn.harbor.util.ExclusionIndex;
 import xyz.nkomarn.harbor.util.Messages;
 import xyz.nkomarn.harbor.util.Metrics;
 import xyz.nkomarn.harbor.util.PlayerManager;
+import xyz.nkomarn.harbor.util.SleepIndex;
+import xyz.nkomarn.harbor.util.WorldLifecycle;
+import xyz.nkomarn.harbor.util.WorldRegistry;
 
 import java.util.Arrays;
 import java.util.Optional;
@@ -25,9 +33,13 @@ public class Harbor extends JavaPlugin {
     public static boolean usingFolia = false;
 
     private Config config;
+    private WorldLifecycle worldLifecycle;
+    private WorldRegistry worldRegistry;
+    private SleepIndex sleepIndex;
     private Checker checker;
     private Messages messages;
     private PlayerManager playerManager;
+    private ExclusionIndex exclusionIndex;
     private Essentials essentials;
 
     @Override
@@ -38,19 +50,35 @@ public class Harbor extends JavaPlugin {
         } catch (ClassNotFoundException e) {
             usingFolia = false;
         }
-        SchedulerUtils.plugin = this;
+        SchedulerUtils.init(this);
     }
 
     public void onEnable() {
         PluginManager pluginManager = getServer().getPluginManager();
 
         config = new Config(this);
+        worldRegistry = new WorldRegistry(this);
+        sleepIndex = new SleepIndex();
         checker = new Checker(this);
         messages = new Messages(this);
-        playerManager = new PlayerManager(this);
         essentials = (Essentials) pluginManager.getPlugin("Essentials");
+        playerManager = new PlayerManager(this);
+        exclusionIndex = new ExclusionIndex(this);
+
+        worldLifecycle = new WorldLifecycle();
+        worldLifecycle.register("worlds", worldRegistry);
+        worldLifecycle.register("sleep index", sleepIndex);
+        worldLifecycle.register("exclusion index", exclusionIndex);
+        worldLifecycle.register("checker", checker);
+        worldLifecycle.register("batch exclusions", checker.getBatchExclusions());
+        worldLifecycle.register("bossbars", messages);
+        worldLifecycle.register("work queue", SchedulerUtils.getWorkQueue());
 
         Arrays.asList(
+                worldRegistry,
+                worldLifecycle,
+                sleepIndex,
+                exclusionIndex,
                 messages,
                 playerManager,
                 new BedListener(this)
@@ -70,6 +98,10 @@ public class Harbor extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        int cancelled = SchedulerUtils.getTasks().cancelAll();
+        getLogger().fine("Cancelled " + cancelled + " running tasks.");
+        SyncBridge.shutdown();
+
         for (World world : getServer().getWorlds()) {
             messages.clearBar(world);
         }
@@ -85,6 +117,21 @@ public class Harbor extends JavaPlugin {
         return config;
     }
 
+    @NotNull
+    public WorldRegistry getWorldRegistry() {
+        return worldRegistry;
+    }
+
+    @NotNull
+    public WorldLifecycle getWorldLifecycle() {
+        return worldLifecycle;
+    }
+
+    @NotNull
+    public SleepIndex getSleepIndex() {
+        return sleepIndex;
+    }
+
     @NotNull
     public Checker getChecker() {
         return checker;
@@ -100,6 +147,26 @@ public class Harbor extends JavaPlugin {
         return playerManager;
     }
 
+    @NotNull
+    public ExclusionIndex getExclusionIndex() {
+        return exclusionIndex;
+    }
+
+    /**
+     * Returns the sleep state of a world as of Harbor's most recent check.
+     *
+     * @param world The world for which to return the snapshot
+     *
+     * @return The current {@link WorldSleepSnapshot} of the given world
+     *
+     * @see Checker#getSnapshot(World)
+     */
+    @NotNull
+    @SuppressWarnings("unused")
+    public WorldSleepSnapshot getSnapshot(@NotNull World world) {
+        return checker.getSnapshot(world);
+    }
+
     /**
      * Add an {@link ExclusionProvider} to harbor, so an external plugin can set a player to be excluded from the sleep count
      *
@@ -125,6 +192,46 @@ public class Harbor extends JavaPlugin {
         checker.removeExclusionProvider(provider);
     }
 
+    /**
+     * Add a {@link BatchExclusionProvider} to harbor, so an external plugin can exclude players from the sleep count
+     * for a whole world at once, i.e. from a database lookup that must not block the server thread
+     *
+     * @param provider An external implementation of a {@link BatchExclusionProvider}, provided by an implementing plugin
+     *
+     * @see BatchExclusionProvider
+     * @see BatchExclusionProvider#of(ExclusionProvider)
+     */
+    @SuppressWarnings("unused")
+    public void addBatchExclusionProvider(BatchExclusionProvider provider) {
+        checker.addBatchExclusionProvider(provider);
+    }
+
+    /**
+     * Remove a {@link BatchExclusionProvider}, for use by an external plugin
+     *
+     * @param provider The provider to remove
+     *
+     * @see #addBatchExclusionProvider(BatchExclusionProvider)
+     */
+    @SuppressWarnings("unused")
+    public void removeBatchExclusionProvider(BatchExclusionProvider provider) {
+        checker.removeBatchExclusionProvider(provider);
+    }
+
+    /**
+     * Tells harbor that the exclusion state of a player may have changed, so an external plugin whose
+     * {@link ExclusionProvider} depends on its own state (e.g. a vanish or duty plugin) can have the player
+     * re-evaluated without waiting for the next reconciliation
+     *
+     * @param player The player to re-evaluate
+     *
+     * @see ExclusionIndex#invalidate(Player)
+     */
+    @SuppressWarnings("unused")
+    public void invalidateExclusion(@NotNull Player player) {
+        exclusionIndex.invalidate(player);
+    }
+
     /**
      * Add an {@link AFKProvider} to harbor, so an external plugin can provide an AFK status to harbor
      *
@@ -138,6 +245,21 @@ public class Harbor extends JavaPlugin {
         playerManager.addAfkProvider(provider, type);
     }
 
+    /**
+     * Push the AFK state of a player for a registered {@link AFKProvider}, so an external plugin that knows when
+     * its AFK state changes doesn't have to be polled for every player on every check
+     *
+     * @param provider The {@link AFKProvider} the state belongs to, which must have been added before
+     * @param player   The player whose AFK state changed
+     * @param afk      Whether the provider considers the player AFK
+     *
+     * @see PlayerManager#setAfkState(AFKProvider, Player, boolean)
+     */
+    @SuppressWarnings("unused")
+    public void setAfkState(@NotNull AFKProvider provider, @NotNull Player player, boolean afk) {
+        playerManager.setAfkState(provider, player, afk);
+    }
+
     /**
      * Removes an {@link ExclusionProvider}
      * @param provider The provider to remove
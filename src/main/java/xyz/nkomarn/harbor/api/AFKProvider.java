@@ -6,6 +6,10 @@ import org.bukkit.entity.Player;
  * The {@link AFKProvider} interface provides a way for an implementing
  * class in an external plugin to provide a way for external plugins to tell
  * Harbor if a Player is AFK, in case of a custom AFK implementation
+ * <p>
+ * Providers that know when a player's AFK state changes can push it through
+ * {@link xyz.nkomarn.harbor.Harbor#setAfkState(AFKProvider, Player, boolean)} instead;
+ * once a provider has pushed a state, Harbor stops calling {@link #isAFK(Player)}
  *
  * @see xyz.nkomarn.harbor.Harbor#addExclusionProvider(ExclusionProvider)
  */
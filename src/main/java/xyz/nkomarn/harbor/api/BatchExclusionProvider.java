@@ -0,0 +1,110 @@
+package xyz.nkomarn.harbor.api;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import xyz.nkomarn.harbor.folia.SchedulerUtils;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The {@link BatchExclusionProvider} interface provides a way for an implementing
+ * class in an external plugin to exclude players from the cap for a whole world at once,
+ * optionally asynchronously (i.e. when the answer comes from a database or a remote cache)
+ * <p>
+ * Harbor never waits for a result: every check uses the last result that has completed,
+ * and players whose exclusion changed between two results are re-evaluated once it arrives
+ *
+ * @see xyz.nkomarn.harbor.Harbor#addBatchExclusionProvider(BatchExclusionProvider)
+ */
+public interface BatchExclusionProvider {
+    /**
+     * Returns which of the given players are excluded from the sleep checks for Harbor
+     *
+     * @param world   The {@link World} that is being checked
+     * @param players The eligible {@link Player}s in the world
+     *
+     * @return The unique ids of the excluded players
+     */
+    Set<UUID> getExcluded(World world, Collection<Player> players);
+
+    /**
+     * Returns which of the given players are excluded from the sleep checks for Harbor, without blocking the
+     * calling thread. The default runs {@link #getExcluded(World, Collection)} off the server threads, so
+     * implementations that must touch the players themselves should override this
+     *
+     * @param world   The {@link World} that is being checked
+     * @param players The eligible {@link Player}s in the world
+     *
+     * @return A future completed with the unique ids of the excluded players
+     */
+    default CompletableFuture<Set<UUID>> getExcludedAsync(World world, Collection<Player> players) {
+        return CompletableFuture.supplyAsync(() -> getExcluded(world, players), SchedulerUtils.getAsyncExecutor());
+    }
+
+    /**
+     * Returns the name this provider is reported under
+     *
+     * @return The name of the provider, the simple class name by default
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Adapts a single-player {@link ExclusionProvider} to the batch API, asking it once per player on the main
+     * thread. On Folia, where players can only be asked on their own threads, Harbor registers the adapted
+     * provider with the per-player exclusion checks instead
+     *
+     * @param provider The provider to adapt
+     *
+     * @return A batch provider backed by the given provider
+     */
+    static BatchExclusionProvider of(ExclusionProvider provider) {
+        return new Adapter(provider);
+    }
+
+    /**
+     * A single-player {@link ExclusionProvider} adapted to the batch API
+     *
+     * @see #of(ExclusionProvider)
+     */
+    final class Adapter implements BatchExclusionProvider {
+        private final ExclusionProvider provider;
+
+        private Adapter(ExclusionProvider provider) {
+            this.provider = provider;
+        }
+
+        /**
+         * @return The adapted provider
+         */
+        public ExclusionProvider getProvider() {
+            return provider;
+        }
+
+        @Override
+        public Set<UUID> getExcluded(World world, Collection<Player> players) {
+            Set<UUID> excluded = new HashSet<>();
+            for (Player player : players) {
+                if (provider.isExcluded(player)) {
+                    excluded.add(player.getUniqueId());
+                }
+            }
+            return excluded;
+        }
+
+        @Override
+        public CompletableFuture<Set<UUID>> getExcludedAsync(World world, Collection<Player> players) {
+            return SchedulerUtils.callSyncMethod(null, () -> getExcluded(world, players));
+        }
+
+        @Override
+        public String getName() {
+            return provider.getName();
+        }
+    }
+}
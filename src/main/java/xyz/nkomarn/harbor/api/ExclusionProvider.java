@@ -18,4 +18,23 @@ public interface ExclusionProvider {
      * @return If the player is excluded (true) or not (false)
      */
     boolean isExcluded(Player player);
+
+    /**
+     * Returns the name this provider is reported under in {@code /harbor providers}
+     *
+     * @return The name of the provider, the simple class name by default
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Declares the rough cost of a single {@link #isExcluded(Player)} call, in nanoseconds. Cheaper providers are
+     * asked first, so an expensive provider is skipped entirely for players a cheap one already excludes
+     *
+     * @return The declared cost, or a negative value to have Harbor measure it instead (the default)
+     */
+    default long getCost() {
+        return -1;
+    }
 }
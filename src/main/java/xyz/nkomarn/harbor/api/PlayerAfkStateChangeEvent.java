@@ -0,0 +1,40 @@
+package xyz.nkomarn.harbor.api;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.player.PlayerEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Called when Harbor's fallback AFK detection moves a player into or out of the AFK state; the player's
+ * timeout expired, or the player became active again
+ */
+public class PlayerAfkStateChangeEvent extends PlayerEvent {
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final boolean afk;
+
+    public PlayerAfkStateChangeEvent(@NotNull Player player, boolean afk) {
+        super(player, !Bukkit.isPrimaryThread());
+        this.afk = afk;
+    }
+
+    /**
+     * @return Whether the player is now AFK (true) or active again (false)
+     */
+    public boolean isAfk() {
+        return afk;
+    }
+
+    @NotNull
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    @NotNull
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
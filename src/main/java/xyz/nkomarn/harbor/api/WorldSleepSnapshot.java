@@ -0,0 +1,98 @@
+package xyz.nkomarn.harbor.api;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * An immutable view of a world's sleep state, taken once per check so that every consumer (the checker,
+ * messages and external plugins) works from the same numbers.
+ *
+ * @see xyz.nkomarn.harbor.Harbor#getSnapshot(org.bukkit.World)
+ */
+public final class WorldSleepSnapshot {
+    private final UUID world;
+    private final int players;
+    private final int excluded;
+    private final int sleeping;
+    private final double percentage;
+    private final int skipAmount;
+
+    public WorldSleepSnapshot(@NotNull UUID world, int players, int excluded, int sleeping, double percentage) {
+        this.world = world;
+        this.players = players;
+        this.excluded = excluded;
+        this.sleeping = sleeping;
+        this.percentage = percentage;
+        this.skipAmount = (int) Math.ceil(getEligible() * (percentage / 100));
+    }
+
+    /**
+     * @return The unique id of the world this snapshot was taken of.
+     */
+    @NotNull
+    public UUID getWorld() {
+        return world;
+    }
+
+    /**
+     * @return The amount of players in the world, including excluded players.
+     */
+    public int getPlayers() {
+        return players;
+    }
+
+    /**
+     * @return The amount of players excluded from the sleep count.
+     */
+    public int getExcluded() {
+        return excluded;
+    }
+
+    /**
+     * @return The amount of players counted for the sleep checks, i.e. the players minus excluded players.
+     */
+    public int getEligible() {
+        return Math.max(0, players - excluded);
+    }
+
+    /**
+     * @return The amount of sleeping players.
+     */
+    public int getSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * @return The amount of players that must be sleeping to skip the night.
+     */
+    public int getSkipAmount() {
+        return skipAmount;
+    }
+
+    /**
+     * @return The amount of players that still need to get into bed to skip the night.
+     */
+    public int getNeeded() {
+        return Math.max(0, skipAmount - sleeping);
+    }
+
+    /**
+     * @return The ratio of sleeping players to the skip amount, capped at 1.
+     */
+    public double getProgress() {
+        return skipAmount == 0 ? 1 : Math.min(1, (double) sleeping / skipAmount);
+    }
+
+    /**
+     * Returns a copy of this snapshot with an updated sleeping count, keeping all other values.
+     *
+     * @param sleeping The new amount of sleeping players.
+     *
+     * @return The updated snapshot.
+     */
+    @NotNull
+    public WorldSleepSnapshot withSleeping(int sleeping) {
+        return sleeping == this.sleeping ? this : new WorldSleepSnapshot(world, players, excluded, sleeping, percentage);
+    }
+}
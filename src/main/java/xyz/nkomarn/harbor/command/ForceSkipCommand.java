@@ -36,7 +36,7 @@ public class ForceSkipCommand implements CommandExecutor {
             sender.sendMessage(config.getPrefix() + "This world's time is already being accelerated.");
         } else {
             sender.sendMessage(config.getPrefix() + "Forcing night skip in your world.");
-            SchedulerUtils.runTask(null, () -> checker.forceSkip(world));
+            SchedulerUtils.queue(null, () -> checker.forceSkip(world));
         }
 
         return true;
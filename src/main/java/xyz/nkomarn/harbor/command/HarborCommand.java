@@ -5,10 +5,19 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.folia.HarborTask;
+import xyz.nkomarn.harbor.folia.SchedulerUtils;
+import xyz.nkomarn.harbor.folia.WorkQueue;
+import xyz.nkomarn.harbor.listener.AfkListener;
+import xyz.nkomarn.harbor.task.Checker;
 import xyz.nkomarn.harbor.util.Config;
+import xyz.nkomarn.harbor.util.ExclusionPipeline;
+import xyz.nkomarn.harbor.util.WorldStateHolder;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class HarborCommand implements TabExecutor {
 
@@ -29,11 +38,75 @@ public class HarborCommand implements TabExecutor {
 
         if (args[0].equalsIgnoreCase("reload")) {
             config.reload();
+            harbor.getWorldRegistry().refresh();
+            harbor.getExclusionIndex().invalidateAll();
             sender.sendMessage(config.getPrefix() + "Reloaded configuration.");
             return true;
         }
 
-        sender.sendMessage(config.getPrefix() + config.getString("messages.miscellaneous.unrecognized-command"));
+        if (args[0].equalsIgnoreCase("timings")) {
+            Checker checker = harbor.getChecker();
+            sender.sendMessage(config.getPrefix() + String.format("Main thread time of the last check: %.3fms capture, %.3fms apply.",
+                    checker.getCaptureNanos() / 1e6, checker.getApplyNanos() / 1e6));
+            sender.sendMessage(config.getPrefix() + "Next check in " + checker.getNextDelay() + " ticks.");
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("providers")) {
+            for (ExclusionPipeline.Entry entry : harbor.getChecker().getExclusionPipeline().getEntries()) {
+                sender.sendMessage(config.getPrefix() + String.format("%s: %d calls, %d excluded, %.2fus mean, <%.2fus p99, cost %s.",
+                        entry.getName(), entry.getInvocations(), entry.getHits(), entry.getMeanNanos() / 1e3,
+                        entry.getPercentileNanos(0.99) / 1e3, entry.isCostDeclared() ? entry.getCost() + "ns" : "measured"));
+            }
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("afk")) {
+            AfkListener listener = harbor.getPlayerManager().getDefaultProvider().getListener();
+            if (listener == null || !listener.isActive()) {
+                sender.sendMessage(config.getPrefix() + "Fallback AFK detection is not active.");
+                return true;
+            }
+
+            long sampled = listener.getSampledCount();
+            long skipped = listener.getSkippedCount();
+            sender.sendMessage(config.getPrefix() + String.format("Fallback AFK detection: %d players tracked, %s.",
+                    listener.getTrackedCount(), listener.isDemandDriven()
+                            ? "demand-driven in " + listener.getDemandedWorldCount() + " worlds" : "sampling all worlds"));
+            sender.sendMessage(config.getPrefix() + String.format("%d samples taken, %d skipped (%.1f%%).",
+                    sampled, skipped, sampled + skipped == 0 ? 0 : skipped * 100.0 / (sampled + skipped)));
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("worlds")) {
+            long total = 0;
+            for (Map.Entry<String, WorldStateHolder> entry : harbor.getWorldLifecycle().getHolders().entrySet()) {
+                WorldStateHolder holder = entry.getValue();
+                total += holder.getRetainedBytes();
+                sender.sendMessage(config.getPrefix() + String.format("%s: %d worlds, ~%.1fKB.",
+                        entry.getKey(), holder.getTrackedWorlds(), holder.getRetainedBytes() / 1024.0));
+            }
+            sender.sendMessage(config.getPrefix() + String.format("%d worlds loaded, ~%.1fKB of per-world state retained.",
+                    harbor.getServer().getWorlds().size(), total / 1024.0));
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("tasks")) {
+            List<HarborTask> tasks = SchedulerUtils.getTasks().getTasks();
+            Map<String, Integer> counts = new TreeMap<>();
+            for (HarborTask task : tasks) {
+                counts.merge(task.getName(), 1, Integer::sum);
+            }
+
+            WorkQueue queue = SchedulerUtils.getWorkQueue();
+            sender.sendMessage(config.getPrefix() + tasks.size() + " running tasks.");
+            sender.sendMessage(config.getPrefix() + String.format("Work queue: %d pending, %d submitted, %d coalesced, %d carried over.",
+                    queue.getPending(), queue.getSubmitted(), queue.getCoalesced(), queue.getCarriedOver()));
+            counts.forEach((name, count) -> sender.sendMessage(config.getPrefix() + name + ": " + count + "."));
+            return true;
+        }
+
+        sender.sendMessage(config.getPrefix() + config.getSettings().getUnrecognizedCommand());
         return true;
     }
 
@@ -47,6 +120,6 @@ public class HarborCommand implements TabExecutor {
             return null;
         }
 
-        return Collections.singletonList("reload");
+        return Arrays.asList("reload", "timings", "providers", "afk", "worlds", "tasks");
     }
 }
@@ -0,0 +1,71 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link HarborScheduler} for Paper/Spigot servers, backed by the {@link BukkitScheduler}; everything that
+ * isn't asynchronous runs on the main server thread.
+ */
+final class BukkitHarborScheduler implements HarborScheduler {
+    private final Plugin plugin;
+    private final BukkitScheduler scheduler;
+
+    BukkitHarborScheduler(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+        this.scheduler = plugin.getServer().getScheduler();
+    }
+
+    @Override
+    public void runTaskLater(@Nullable Location loc, @NotNull Runnable task, long delay) {
+        scheduler.runTaskLater(plugin, task, delay);
+    }
+
+    @Override
+    public void runTaskTimer(@Nullable Location loc, @NotNull FoliaRunnable runnable, long delay, long period) {
+        // Bukkit would still run a runnable that was cancelled before it got scheduled
+        if (runnable.isCancelled()) {
+            return;
+        }
+        runnable.runTaskTimer(plugin, delay, period);
+        runnable.markRepeating();
+    }
+
+    @Override
+    public void runTaskTimerAsynchronously(@NotNull FoliaRunnable runnable, long delay, long period) {
+        if (runnable.isCancelled()) {
+            return;
+        }
+        runnable.runTaskTimerAsynchronously(plugin, delay, period);
+        runnable.markRepeating();
+    }
+
+    @Override
+    public void runTaskAsynchronously(@NotNull Runnable task) {
+        scheduler.runTaskAsynchronously(plugin, task);
+    }
+
+    @Override
+    public void runTask(@Nullable Location loc, @NotNull Runnable task) {
+        scheduler.runTask(plugin, task);
+    }
+
+    @Override
+    public boolean runAtEntity(@NotNull Entity entity, @NotNull Runnable task, @Nullable Runnable retired) {
+        scheduler.runTask(plugin, task);
+        return true;
+    }
+
+    @Override
+    public void runAtEntityTimer(@NotNull Entity entity, @NotNull FoliaRunnable runnable, @Nullable Runnable retired, long delay, long period) {
+        if (runnable.isCancelled()) {
+            return;
+        }
+        runnable.runTaskTimer(plugin, delay, period);
+        runnable.markRepeating();
+    }
+}
@@ -0,0 +1,123 @@
+package xyz.nkomarn.harbor.folia;
+
+import io.papermc.paper.threadedregions.scheduler.AsyncScheduler;
+import io.papermc.paper.threadedregions.scheduler.EntityScheduler;
+import io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler;
+import io.papermc.paper.threadedregions.scheduler.RegionScheduler;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link HarborScheduler} for Folia servers. Harbor is compiled against the Bukkit API, which doesn't expose
+ * Folia's schedulers, so they are looked up reflectively; the global, region and async schedulers once on
+ * construction, and an entity's scheduler through a {@link MethodHandle} resolved on construction.
+ * <p>
+ * Asynchronous tasks run on Folia's {@link AsyncScheduler}, off every region thread. It schedules by wall-clock
+ * time, so tick delays are converted assuming 20 ticks per second.
+ */
+final class FoliaHarborScheduler implements HarborScheduler {
+    private final Plugin plugin;
+    private final GlobalRegionScheduler globalScheduler;
+    private final RegionScheduler regionScheduler;
+    private final AsyncScheduler asyncScheduler;
+    private final MethodHandle getEntityScheduler;
+
+    FoliaHarborScheduler(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+        Server server = plugin.getServer();
+        try {
+            this.globalScheduler = (GlobalRegionScheduler) server.getClass().getMethod("getGlobalRegionScheduler").invoke(server);
+            this.regionScheduler = (RegionScheduler) server.getClass().getMethod("getRegionScheduler").invoke(server);
+            this.asyncScheduler = (AsyncScheduler) server.getClass().getMethod("getAsyncScheduler").invoke(server);
+            this.getEntityScheduler = MethodHandles.publicLookup().findVirtual(Entity.class, "getScheduler", MethodType.methodType(EntityScheduler.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to resolve the Folia schedulers", e);
+        }
+    }
+
+    @Override
+    public void runTaskLater(@Nullable Location loc, @NotNull Runnable task, long delay) {
+        if (loc != null) {
+            regionScheduler.runDelayed(plugin, loc, (ScheduledTask scheduledTask) -> task.run(), delay);
+        } else {
+            globalScheduler.runDelayed(plugin, (ScheduledTask scheduledTask) -> task.run(), delay);
+        }
+    }
+
+    @Override
+    public void runTaskTimer(@Nullable Location loc, @NotNull FoliaRunnable runnable, long delay, long period) {
+        ScheduledTask task;
+        if (loc != null) {
+            task = regionScheduler.runAtFixedRate(plugin, loc, (ScheduledTask t) -> runnable.run(), delay, period);
+        } else {
+            task = globalScheduler.runAtFixedRate(plugin, (ScheduledTask t) -> runnable.run(), delay, period);
+        }
+        runnable.setScheduledTask(task);
+        runnable.markRepeating();
+    }
+
+    @Override
+    public void runTaskTimerAsynchronously(@NotNull FoliaRunnable runnable, long delay, long period) {
+        // Runs are fixed-rate against the first run, so a slow run doesn't push back the ones after it
+        ScheduledTask task = asyncScheduler.runAtFixedRate(plugin, (ScheduledTask t) -> runnable.run(),
+                toMillis(delay), Math.max(1L, toMillis(period)), TimeUnit.MILLISECONDS);
+        runnable.setScheduledTask(task);
+        runnable.markRepeating();
+    }
+
+    @Override
+    public void runTaskAsynchronously(@NotNull Runnable task) {
+        asyncScheduler.runNow(plugin, (ScheduledTask t) -> task.run());
+    }
+
+    @Override
+    public void runTask(@Nullable Location loc, @NotNull Runnable task) {
+        if (loc != null) {
+            regionScheduler.execute(plugin, loc, task);
+        } else {
+            globalScheduler.execute(plugin, task);
+        }
+    }
+
+    @Override
+    public boolean runAtEntity(@NotNull Entity entity, @NotNull Runnable task, @Nullable Runnable retired) {
+        return getScheduler(entity).execute(plugin, task, retired, 1L);
+    }
+
+    @Override
+    public void runAtEntityTimer(@NotNull Entity entity, @NotNull FoliaRunnable runnable, @Nullable Runnable retired, long delay, long period) {
+        ScheduledTask task = getScheduler(entity).runAtFixedRate(plugin, (ScheduledTask t) -> runnable.run(), () -> {
+            SchedulerUtils.getTasks().unregister(runnable);
+            if (retired != null) {
+                retired.run();
+            }
+        }, delay, period);
+        if (task != null) {
+            runnable.setScheduledTask(task);
+            runnable.markRepeating();
+        }
+    }
+
+    private static long toMillis(long ticks) {
+        return Math.max(0L, ticks) * 50L;
+    }
+
+    @NotNull
+    private EntityScheduler getScheduler(@NotNull Entity entity) {
+        try {
+            return (EntityScheduler) getEntityScheduler.invokeExact(entity);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to get the scheduler of " + entity, e);
+        }
+    }
+}
@@ -3,20 +3,59 @@ package xyz.nkomarn.harbor.folia;
 import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.scheduler.BukkitRunnable;
 
-public class FoliaRunnable extends BukkitRunnable {
+public class FoliaRunnable extends BukkitRunnable implements HarborTask {
 
     private ScheduledTask foliaTask;
+    private volatile boolean cancelled;
+    private volatile boolean repeating;
 
     @Override
     public synchronized void cancel() throws IllegalStateException {
-        if(foliaTask != null) foliaTask.cancel();
+        if (cancelled) return;
+        cancelled = true;
+        SchedulerUtils.getTasks().unregister(this);
+
+        if (foliaTask != null) {
+            foliaTask.cancel();
+            return;
+        }
+
+        // Only a runnable scheduled through Bukkit has a task id; any other scheduler drops it once it is seen
+        // cancelled, so there is no need to touch Bukkit (which may not even be running, i.e. in simulations)
+        try {
+            getTaskId();
+        } catch (IllegalStateException ignored) {
+            return;
+        }
+        super.cancel();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isRepeating() {
+        return repeating;
     }
 
     @Override
     public void run() {
     }
 
-    public void setScheduledTask(ScheduledTask task) {
+    public synchronized void setScheduledTask(ScheduledTask task) {
         this.foliaTask = task;
+        // Cancelled before Folia handed out the task
+        if (cancelled) task.cancel();
+    }
+
+    /**
+     * Marks this runnable as scheduled to run repeatedly and registers it as a live task; called by the
+     * schedulers, or by a runnable which keeps rescheduling itself.
+     */
+    protected void markRepeating() {
+        repeating = true;
+        SchedulerUtils.getTasks().register(this);
     }
 }
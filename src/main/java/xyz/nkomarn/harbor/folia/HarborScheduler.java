@@ -0,0 +1,146 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scheduling backend used by {@link SchedulerUtils}. An implementation is picked once the plugin loads,
+ * with any platform schedulers already resolved, so scheduling a task doesn't need any lookups.
+ */
+public interface HarborScheduler {
+
+    /**
+     * @return The clock counting the ticks of this scheduler.
+     */
+    @NotNull
+    default TickClock getClock() {
+        return TickClock.SYSTEM;
+    }
+
+    /**
+     * @return Whether the current thread is the main thread, or the global region on Folia.
+     */
+    default boolean isPrimaryThread() {
+        return Bukkit.isPrimaryThread();
+    }
+
+    /**
+     * Schedules a task to run later.
+     * @param loc The location where the task should run, or null for the main thread.
+     * @param task   The task to run.
+     * @param delay  The delay in ticks before the task runs.
+     */
+    void runTaskLater(@Nullable Location loc, @NotNull Runnable task, long delay);
+
+    /**
+     * Schedules a task to run repeatedly.
+     * @param loc The location where the task should run, or null for the main thread.
+     * @param runnable   The FoliaRunnable to run.
+     * @param delay  The delay in ticks before the task runs.
+     * @param period The period in ticks between subsequent runs of the task.
+     */
+    void runTaskTimer(@Nullable Location loc, @NotNull FoliaRunnable runnable, long delay, long period);
+
+    /**
+     * Schedules a task to run repeatedly off the server threads, at a fixed rate.
+     * @param runnable The FoliaRunnable to run.
+     * @param delay  The delay in ticks before the task runs.
+     * @param period The period in ticks between subsequent runs of the task.
+     */
+    void runTaskTimerAsynchronously(@NotNull FoliaRunnable runnable, long delay, long period);
+
+    /**
+     * Runs a task off the server threads.
+     * @param task The task to run.
+     */
+    void runTaskAsynchronously(@NotNull Runnable task);
+
+    /**
+     * Runs a task at a specific location or globally.
+     * @param loc The location where the task should run, or null for the main thread.
+     * @param task The task to run.
+     */
+    void runTask(@Nullable Location loc, @NotNull Runnable task);
+
+    /**
+     * Runs a task on the thread owning the given entity.
+     * @param entity The entity whose thread should run the task.
+     * @param task The task to run.
+     * @param retired The task to run instead if the entity is removed before the task runs, or null.
+     * @return Whether the task was scheduled; if not, neither the task nor the retired callback will run.
+     */
+    boolean runAtEntity(@NotNull Entity entity, @NotNull Runnable task, @Nullable Runnable retired);
+
+    /**
+     * Schedules a task to run repeatedly on the thread owning the given entity.
+     * @param entity The entity whose thread should run the task.
+     * @param runnable The FoliaRunnable to run.
+     * @param retired The task to run if the entity is removed while the task is scheduled, or null.
+     * @param delay  The delay in ticks before the task runs.
+     * @param period The period in ticks between subsequent runs of the task.
+     */
+    void runAtEntityTimer(@NotNull Entity entity, @NotNull FoliaRunnable runnable, @Nullable Runnable retired, long delay, long period);
+
+    /**
+     * Calls a method at a specific location or globally, and completes with its result. The future is completed
+     * from inside the scheduled task, so no thread waits for it; cancelling the future before the task runs
+     * keeps the method from being called.
+     * @param loc The location where the method should be called, or null for the main thread.
+     * @param task The method to call.
+     * @return A future completing with the result of the method.
+     */
+    @NotNull
+    default <T> CompletableFuture<T> callSyncMethod(@Nullable Location loc, @NotNull Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        runTask(loc, SyncBridge.completing(future, task));
+        return future;
+    }
+
+    /**
+     * Calls a method at a specific location or globally, and completes with its result, or with a
+     * {@link java.util.concurrent.TimeoutException} if it wasn't called within the given time.
+     * @param loc The location where the method should be called, or null for the main thread.
+     * @param task The method to call.
+     * @param timeout The time to wait for the method to be called.
+     * @param unit The unit of the timeout.
+     * @return A future completing with the result of the method.
+     */
+    @NotNull
+    default <T> CompletableFuture<T> callSyncMethod(@Nullable Location loc, @NotNull Callable<T> task, long timeout, @NotNull TimeUnit unit) {
+        return SyncBridge.withTimeout(callSyncMethod(loc, task), timeout, unit);
+    }
+
+    /**
+     * @param loc The location where tasks should run, or null for the main thread.
+     * @return An executor running tasks at a specific location or globally, i.e. for {@link CompletableFuture#thenApplyAsync}.
+     */
+    @NotNull
+    default Executor executor(@Nullable Location loc) {
+        return command -> runTask(loc, command);
+    }
+
+    /**
+     * @param entity The entity whose thread should run tasks.
+     * @return An executor running tasks on the thread owning the given entity; tasks are dropped once it is removed.
+     */
+    @NotNull
+    default Executor executor(@NotNull Entity entity) {
+        return command -> runAtEntity(entity, command, null);
+    }
+
+    /**
+     * @return An executor running tasks off the server threads.
+     */
+    @NotNull
+    default Executor asyncExecutor() {
+        return this::runTaskAsynchronously;
+    }
+}
@@ -0,0 +1,34 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A handle to a task scheduled by Harbor, which cancels reliably on both Paper/Spigot and Folia. Live tasks are
+ * kept in the {@link TaskRegistry} until they are cancelled.
+ */
+public interface HarborTask {
+
+    /**
+     * @return A name describing the task.
+     */
+    @NotNull
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * @return Whether the task runs repeatedly.
+     */
+    boolean isRepeating();
+
+    /**
+     * @return Whether the task has been cancelled.
+     */
+    boolean isCancelled();
+
+    /**
+     * Cancels the task; it won't run again once this returns, unless it is running right now. Cancelling a task
+     * more than once has no effect.
+     */
+    void cancel();
+}
@@ -0,0 +1,183 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Pose;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.api.WorldSleepSnapshot;
+import xyz.nkomarn.harbor.util.ExclusionIndex;
+import xyz.nkomarn.harbor.util.SleepIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregates the sleep state of a world on Folia, where a player's state may only be read from the region
+ * thread owning it. Every round fans out one task per player onto its entity scheduler; each task samples its
+ * player and adds it to lock-free per-world accumulators, and the last one to finish completes the round. The
+ * global region then only has to combine the totals of a completed round.
+ */
+public final class RegionSleepAggregator {
+    // Rounds that take longer than this many cycles to complete (i.e. a stalled region) are abandoned
+    private static final int STALE_CYCLES = 5;
+
+    private final Harbor harbor;
+    private final Map<UUID, Round> rounds;
+    private long cycle;
+
+    public RegionSleepAggregator(@NotNull Harbor harbor) {
+        this.harbor = harbor;
+        this.rounds = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Advances the cycle counter used to detect stalled rounds; called once per check.
+     */
+    public void nextCycle() {
+        cycle++;
+    }
+
+    /**
+     * Combines the totals of the most recently completed round of a given world into a snapshot.
+     *
+     * @param world The world for which to collect the totals.
+     *
+     * @return The combined snapshot, or null if the world has no completed round.
+     */
+    @Nullable
+    public WorldSleepSnapshot collect(@NotNull World world) {
+        Round round = rounds.get(world.getUID());
+        if (round == null || !round.complete) {
+            return null;
+        }
+
+        return new WorldSleepSnapshot(world.getUID(), round.players.get(), round.excluded.get(), round.sleeping.get(),
+                harbor.getConfiguration().getSettings().getPercentage());
+    }
+
+    /**
+     * Starts a new round for a given world, unless its previous round is still in progress.
+     *
+     * @param world The world for which to start a round.
+     */
+    public void fanOut(@NotNull World world) {
+        UUID worldId = world.getUID();
+        Round previous = rounds.get(worldId);
+        if (previous != null && !previous.complete && cycle - previous.cycle < STALE_CYCLES) {
+            return;
+        }
+
+        SleepIndex sleepIndex = harbor.getSleepIndex();
+        List<Player> players = new ArrayList<>();
+        for (UUID uuid : sleepIndex.getPlayers(world)) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null) {
+                sleepIndex.remove(world, uuid);
+            } else {
+                players.add(player);
+            }
+        }
+
+        // One extra pending count guards against the round completing before every task has been scheduled
+        Round round = new Round(cycle, players.size() + 1);
+        rounds.put(worldId, round);
+
+        for (Player player : players) {
+            if (!SchedulerUtils.runAtEntity(player, () -> sample(round, world, player), round::finish)) {
+                round.finish();
+            }
+        }
+        round.finish();
+    }
+
+    /**
+     * Re-evaluates the sleep and exclusion state of every online player on the thread owning them, correcting
+     * any drift from missed events; the counterpart of the reconciliation pass on Paper and Spigot. Players
+     * missing from the sleep index entirely are picked up here as well, which rounds can't do.
+     */
+    public void reconcile() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            SchedulerUtils.runAtEntity(player, () -> {
+                if (player.isOnline()) {
+                    harbor.getSleepIndex().update(player);
+                    harbor.getExclusionIndex().invalidate(player);
+                }
+            }, null);
+        }
+    }
+
+    /**
+     * Drops the rounds of a given world, i.e. after it was unloaded.
+     *
+     * @param world The unique id of the world.
+     */
+    public void clearWorld(@NotNull UUID world) {
+        rounds.remove(world);
+    }
+
+    /**
+     * @return The amount of worlds with a round in progress or completed.
+     */
+    public int getTrackedWorlds() {
+        return rounds.size();
+    }
+
+    /**
+     * Samples a single player into a round; runs on the thread owning the player.
+     */
+    private void sample(@NotNull Round round, @NotNull World world, @NotNull Player player) {
+        try {
+            SleepIndex sleepIndex = harbor.getSleepIndex();
+            ExclusionIndex exclusionIndex = harbor.getExclusionIndex();
+
+            // Keep the sleep index in sync while we are on the owning thread anyway; exclusions are kept up to
+            // date by the exclusion index's own event handlers
+            if (!player.getWorld().getUID().equals(world.getUID())) {
+                sleepIndex.remove(world, player.getUniqueId());
+                sleepIndex.update(player);
+                return;
+            }
+            sleepIndex.update(player);
+
+            round.players.incrementAndGet();
+            if (player.getPose() == Pose.SLEEPING) {
+                round.sleeping.incrementAndGet();
+            }
+            if (exclusionIndex.isExcluded(player)) {
+                round.excluded.incrementAndGet();
+            }
+        } finally {
+            round.finish();
+        }
+    }
+
+    /**
+     * The accumulators of one aggregation round of a single world.
+     */
+    private static final class Round {
+        private final long cycle;
+        private final AtomicInteger pending;
+        private final AtomicInteger players = new AtomicInteger();
+        private final AtomicInteger sleeping = new AtomicInteger();
+        private final AtomicInteger excluded = new AtomicInteger();
+        private volatile boolean complete;
+
+        Round(long cycle, int pending) {
+            this.cycle = cycle;
+            this.pending = new AtomicInteger(pending);
+        }
+
+        void finish() {
+            if (pending.decrementAndGet() == 0) {
+                complete = true;
+            }
+        }
+    }
+}
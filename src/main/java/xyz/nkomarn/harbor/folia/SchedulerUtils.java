@@ -1,27 +1,104 @@
 package xyz.nkomarn.harbor.folia;
 
-import io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler;
-import io.papermc.paper.threadedregions.scheduler.RegionScheduler;
-import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Location;
-import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.entity.Entity;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import xyz.nkomarn.harbor.Harbor;
 
-import java.lang.reflect.Method;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import java.util.logging.Logger;
 
 import static xyz.nkomarn.harbor.Harbor.usingFolia;
 
 /**
- * Utility class for scheduling tasks in a Paper/Folia server.
+ * Utility class for scheduling tasks in a Paper/Folia server. Every call is delegated to the {@link HarborScheduler}
+ * picked by {@link #init(Harbor)}, or installed by {@link #install(HarborScheduler, Logger)} (i.e. a
+ * {@link VirtualHarborScheduler} to simulate Harbor without a server).
  */
 public abstract class SchedulerUtils {
 
     public static Harbor plugin;
+    private static HarborScheduler scheduler;
+    private static final TaskRegistry tasks = new TaskRegistry();
+    private static WorkQueue workQueue;
+
+    /**
+     * Picks the scheduling backend for the current platform and resolves its schedulers; must be called once the
+     * plugin loads, before anything is scheduled.
+     * @param harbor The plugin instance.
+     */
+    public static void init(@NotNull Harbor harbor) {
+        plugin = harbor;
+        scheduler = usingFolia ? new FoliaHarborScheduler(harbor) : new BukkitHarborScheduler(harbor);
+        workQueue = new WorkQueue(usingFolia, harbor.getLogger());
+    }
+
+    /**
+     * Replaces the scheduling backend, along with the work queue running on it.
+     * @param harborScheduler The scheduling backend to use.
+     * @param logger The logger to report failing queued tasks to.
+     */
+    public static void install(@NotNull HarborScheduler harborScheduler, @NotNull Logger logger) {
+        scheduler = harborScheduler;
+        workQueue = new WorkQueue(false, logger);
+    }
+
+    /**
+     * @return The clock counting the ticks of the scheduling backend in use.
+     */
+    @NotNull
+    public static TickClock getClock() {
+        return scheduler.getClock();
+    }
+
+    /**
+     * @return The scheduling backend in use.
+     */
+    @NotNull
+    public static HarborScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return The registry of every live repeating task.
+     */
+    @NotNull
+    public static TaskRegistry getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @return The queue of small tasks drained once per tick.
+     */
+    @NotNull
+    public static WorkQueue getWorkQueue() {
+        return workQueue;
+    }
+
+    /**
+     * Queues a small task to run on the next tick, together with any other queued tasks; prefer this over
+     * {@link #runTask(Location, Runnable)} for short tasks handed over from events or other threads.
+     * @param loc The location where the task should run, or null for the main thread.
+     * @param task The task to run.
+     */
+    public static void queue(@Nullable Location loc, @NotNull Runnable task) {
+        workQueue.submit(loc, task);
+    }
+
+    /**
+     * Queues a small task to run on the next tick, unless a task with the same key is still waiting.
+     * @param loc The location where the task should run, or null for the main thread.
+     * @param key The key identifying the task.
+     * @param task The task to run.
+     */
+    public static void queue(@Nullable Location loc, @NotNull Object key, @NotNull Runnable task) {
+        workQueue.submit(loc, key, task);
+    }
 
     /**
      * Schedules a task to run later on the main server thread.
@@ -30,32 +107,7 @@ public abstract class SchedulerUtils {
      * @param delay  The delay in ticks before the task runs.
      */
     public static void runTaskLater(@Nullable Location loc, @NotNull Runnable task, long delay) {
-        if (usingFolia) {
-            try {
-                if (loc != null) {
-                    Method getRegionScheduler = plugin.getServer().getClass().getMethod("getRegionScheduler");
-                    RegionScheduler regionScheduler = (RegionScheduler) getRegionScheduler.invoke(plugin.getServer());
-                    regionScheduler.runDelayed(
-                            plugin,
-                            loc,
-                            (ScheduledTask scheduledTask) -> task.run(),
-                            delay
-                    );
-                } else {
-                    Method getGlobalScheduler = plugin.getServer().getClass().getMethod("getGlobalRegionScheduler");
-                    GlobalRegionScheduler globalScheduler = (GlobalRegionScheduler) getGlobalScheduler.invoke(plugin.getServer());
-                    globalScheduler.runDelayed(
-                            plugin,
-                            (ScheduledTask scheduledTask) -> task.run(),
-                            delay
-                    );
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            return;
-        }
-        plugin.getServer().getScheduler().runTaskLater(plugin, task, delay);
+        scheduler.runTaskLater(loc, task, delay);
     }
 
     /**
@@ -66,84 +118,26 @@ public abstract class SchedulerUtils {
      * @param period The period in ticks between subsequent runs of the task.
      */
     public static void runTaskTimer(@Nullable Location loc, @NotNull FoliaRunnable runnable, long delay, long period) {
-        if (usingFolia) {
-            try {
-                ScheduledTask task;
-                if (loc != null) {
-                    Method getRegionScheduler = plugin.getServer().getClass().getMethod("getRegionScheduler");
-                    RegionScheduler regionScheduler = (RegionScheduler) getRegionScheduler.invoke(plugin.getServer());
-                    task = regionScheduler.runAtFixedRate(
-                            plugin,
-                            loc,
-                            (ScheduledTask t) -> runnable.run(),
-                            delay,
-                            period
-                    );
-                } else {
-                    Method getGlobalScheduler = plugin.getServer().getClass().getMethod("getGlobalRegionScheduler");
-                    GlobalRegionScheduler globalScheduler = (GlobalRegionScheduler) getGlobalScheduler.invoke(plugin.getServer());
-                    task = globalScheduler.runAtFixedRate(
-                            plugin,
-                            (ScheduledTask t) -> runnable.run(),
-                            delay,
-                            period
-                    );
-                }
-                runnable.setScheduledTask(task);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            return;
-        }
-        runnable.runTaskTimer(plugin, delay, period);
-    }
-
-    /**
-     * Schedules a task to run repeatedly on the main server thread asynchronously.
+        scheduler.runTaskTimer(loc, runnable, delay, period);
+    }
+
+    /**
+     * Schedules a task to run repeatedly and asynchronously, at a fixed rate. On Folia, it runs on the async
+     * scheduler rather than on any region.
      * @param runnable The FoliaRunnable to run.
      * @param delay  The delay in ticks before the task runs.
      * @param period The period in ticks between subsequent runs of the task.
      */
     public static void runTaskTimerAsynchronously(@NotNull FoliaRunnable runnable, long delay, long period) {
-        if (usingFolia) {
-            try {
-                Method getGlobalScheduler = plugin.getServer().getClass().getMethod("getGlobalRegionScheduler");
-                GlobalRegionScheduler globalScheduler = (GlobalRegionScheduler) getGlobalScheduler.invoke(plugin.getServer());
-                class AsyncRepeatingTask {
-                    private ScheduledTask task;
-                    void start(long initialDelay) {
-                        task = globalScheduler.runDelayed(plugin, (ScheduledTask t) -> {
-                            runnable.run();
-                            start(period);
-                        }, initialDelay);
-                        runnable.setScheduledTask(task);
-                    }
-                }
-                new AsyncRepeatingTask().start(delay);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            return;
-        }
-        runnable.runTaskTimerAsynchronously(plugin, delay, period);
-    }
-
-    /**
-     * Runs a task asynchronously on the main server thread.
+        scheduler.runTaskTimerAsynchronously(runnable, delay, period);
+    }
+
+    /**
+     * Runs a task asynchronously. On Folia, it runs on the async scheduler rather than on any region.
      * @param task The task to run.
      */
     public static void runTaskAsynchronously(@NotNull Runnable task) {
-        if (usingFolia) {
-            try {
-                Method getGlobalScheduler = plugin.getServer().getClass().getMethod("getGlobalRegionScheduler");
-                GlobalRegionScheduler globalScheduler = (GlobalRegionScheduler) getGlobalScheduler.invoke(plugin.getServer());
-                globalScheduler.execute(plugin, task);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            return;
-        }
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task);
+        scheduler.runTaskAsynchronously(task);
     }
 
     /**
@@ -152,69 +146,71 @@ public abstract class SchedulerUtils {
      * @param task The task to run.
      */
     public static void runTask(@Nullable Location loc, @NotNull Runnable task) {
-        if (usingFolia) {
-            try {
-                if (loc != null) {
-                    Method getRegionScheduler = plugin.getServer().getClass().getMethod("getRegionScheduler");
-                    RegionScheduler regionScheduler = (RegionScheduler) getRegionScheduler.invoke(plugin.getServer());
-                    regionScheduler.execute(plugin, loc, task);
-                } else {
-                    Method getGlobalScheduler = plugin.getServer().getClass().getMethod("getGlobalRegionScheduler");
-                    GlobalRegionScheduler globalScheduler = (GlobalRegionScheduler) getGlobalScheduler.invoke(plugin.getServer());
-                    globalScheduler.execute(plugin, task);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            return;
-        }
-        plugin.getServer().getScheduler().runTask(plugin, task);
+        scheduler.runTask(loc, task);
+    }
+
+    /**
+     * Runs a task on the thread owning the given entity. On Folia, the task is scheduled on the entity's own
+     * scheduler; otherwise it runs on the main server thread.
+     * @param entity The entity whose thread should run the task.
+     * @param task The task to run.
+     * @param retired The task to run instead if the entity is removed before the task runs, or null.
+     * @return Whether the task was scheduled; if not, neither the task nor the retired callback will run.
+     */
+    public static boolean runAtEntity(@NotNull Entity entity, @NotNull Runnable task, @Nullable Runnable retired) {
+        return scheduler.runAtEntity(entity, task, retired);
+    }
+
+    /**
+     * Schedules a task to run repeatedly on the thread owning the given entity. On Folia, the task is scheduled on
+     * the entity's own scheduler and follows the entity across regions; otherwise it runs on the main server thread.
+     * @param entity The entity whose thread should run the task.
+     * @param runnable The FoliaRunnable to run.
+     * @param retired The task to run if the entity is removed while the task is scheduled, or null.
+     * @param delay  The delay in ticks before the task runs.
+     * @param period The period in ticks between subsequent runs of the task.
+     */
+    public static void runAtEntityTimer(@NotNull Entity entity, @NotNull FoliaRunnable runnable, @Nullable Runnable retired, long delay, long period) {
+        scheduler.runAtEntityTimer(entity, runnable, retired, delay, period);
     }
 
+    /**
+     * Calls a method on the main server thread at a specific location or globally, and completes with its result.
+     * @param loc The location where the method should be called, or null for the main thread.
+     * @param task The method to call.
+     * @return A future completing with the result of the method.
+     */
     public static <T> CompletableFuture<T> callSyncMethod(@Nullable Location loc, @NotNull Callable<T> task) {
-        if (usingFolia) {
-            CompletableFuture<T> future = new CompletableFuture<>();
-            try {
-                if (loc != null) {
-                    Method getRegionScheduler = plugin.getServer().getClass().getMethod("getRegionScheduler");
-                    RegionScheduler regionScheduler = (RegionScheduler) getRegionScheduler.invoke(plugin.getServer());
-                    regionScheduler.execute(plugin, loc, () -> {
-                        try {
-                            future.complete(task.call());
-                        } catch (Exception e) {
-                            future.completeExceptionally(e);
-                        }
-                    });
-                } else {
-                    Method getGlobalScheduler = plugin.getServer().getClass().getMethod("getGlobalRegionScheduler");
-                    GlobalRegionScheduler globalScheduler = (GlobalRegionScheduler) getGlobalScheduler.invoke(plugin.getServer());
-                    globalScheduler.execute(plugin, () -> {
-                        try {
-                            future.complete(task.call());
-                        } catch (Exception e) {
-                            future.completeExceptionally(e);
-                        }
-                    });
-                }
-            } catch (Exception e) {
-                future.completeExceptionally(e);
-            }
-            return future;
-        }
-        CompletableFuture<T> cf = new CompletableFuture<>();
-        try {
-            Future<T> bukkitFuture = plugin.getServer().getScheduler().callSyncMethod(plugin, task);
-            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-                try {
-                    T result = bukkitFuture.get();
-                    cf.complete(result);
-                } catch (Throwable ex) {
-                    cf.completeExceptionally(ex);
-                }
-            });
-        } catch (Throwable e) {
-            cf.completeExceptionally(e);
-        }
-        return cf;
+        return scheduler.callSyncMethod(loc, task);
+    }
+
+    /**
+     * Calls a method on the main server thread at a specific location or globally, and completes with its result,
+     * or with a {@link java.util.concurrent.TimeoutException} if it wasn't called within the given time.
+     * @param loc The location where the method should be called, or null for the main thread.
+     * @param task The method to call.
+     * @param timeout The time to wait for the method to be called.
+     * @param unit The unit of the timeout.
+     * @return A future completing with the result of the method.
+     */
+    public static <T> CompletableFuture<T> callSyncMethod(@Nullable Location loc, @NotNull Callable<T> task, long timeout, @NotNull TimeUnit unit) {
+        return scheduler.callSyncMethod(loc, task, timeout, unit);
+    }
+
+    /**
+     * @param loc The location where tasks should run, or null for the main thread.
+     * @return An executor running tasks on the main server thread at a specific location or globally.
+     */
+    @NotNull
+    public static Executor getExecutor(@Nullable Location loc) {
+        return scheduler.executor(loc);
+    }
+
+    /**
+     * @return An executor running tasks asynchronously.
+     */
+    @NotNull
+    public static Executor getAsyncExecutor() {
+        return scheduler.asyncExecutor();
     }
 }
@@ -0,0 +1,91 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bridges callables run by a scheduler to {@link CompletableFuture}s without parking any thread: the future is
+ * completed from inside the scheduled task itself. Timeouts are kept by a single daemon thread, which runs on
+ * wall-clock time so they still fire while the server threads are lagging.
+ */
+public final class SyncBridge {
+    private static ScheduledThreadPoolExecutor timeouts;
+
+    private SyncBridge() {
+    }
+
+    /**
+     * Wraps a callable into a task that completes a future with its result. If the future is already done once
+     * the task runs (i.e. it was cancelled or timed out), the callable isn't called at all.
+     *
+     * @param future The future to complete.
+     * @param task   The callable to call.
+     *
+     * @return The task to schedule.
+     */
+    @NotNull
+    public static <T> Runnable completing(@NotNull CompletableFuture<T> future, @NotNull Callable<T> task) {
+        return () -> {
+            if (future.isDone()) {
+                return;
+            }
+
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+    }
+
+    /**
+     * Completes a future exceptionally with a {@link TimeoutException} if it isn't done within a given time.
+     *
+     * @param future  The future to time out.
+     * @param timeout The time to wait.
+     * @param unit    The unit of the timeout.
+     *
+     * @return The same future.
+     */
+    @NotNull
+    public static <T> CompletableFuture<T> withTimeout(@NotNull CompletableFuture<T> future, long timeout, @NotNull TimeUnit unit) {
+        if (future.isDone()) {
+            return future;
+        }
+
+        ScheduledFuture<?> timer = getTimeouts().schedule(
+                () -> future.completeExceptionally(new TimeoutException("Timed out after " + timeout + " " + unit)),
+                timeout, unit);
+        future.whenComplete((result, e) -> timer.cancel(false));
+        return future;
+    }
+
+    /**
+     * Stops the timeout thread; pending timeouts won't fire anymore.
+     */
+    public static synchronized void shutdown() {
+        if (timeouts != null) {
+            timeouts.shutdownNow();
+            timeouts = null;
+        }
+    }
+
+    @NotNull
+    private static synchronized ScheduledThreadPoolExecutor getTimeouts() {
+        if (timeouts == null) {
+            timeouts = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "Harbor Timeouts");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timeouts.setRemoveOnCancelPolicy(true);
+        }
+        return timeouts;
+    }
+}
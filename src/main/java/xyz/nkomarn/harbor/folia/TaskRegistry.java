@@ -0,0 +1,59 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of every live {@link HarborTask}, so they can be listed and are all cancelled when the plugin
+ * is disabled. Tasks remove themselves once cancelled.
+ */
+public final class TaskRegistry {
+    private final Set<HarborTask> tasks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts tracking a task.
+     *
+     * @param task The task to track.
+     */
+    public void register(@NotNull HarborTask task) {
+        if (!task.isCancelled()) {
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Stops tracking a task.
+     *
+     * @param task The task to stop tracking.
+     */
+    public void unregister(@NotNull HarborTask task) {
+        tasks.remove(task);
+    }
+
+    /**
+     * @return A snapshot of every live task.
+     */
+    @NotNull
+    public List<HarborTask> getTasks() {
+        return new ArrayList<>(tasks);
+    }
+
+    /**
+     * Cancels every live task.
+     *
+     * @return The amount of tasks that were cancelled.
+     */
+    public int cancelAll() {
+        int cancelled = 0;
+        for (HarborTask task : getTasks()) {
+            task.cancel();
+            cancelled++;
+        }
+        tasks.clear();
+        return cancelled;
+    }
+}
@@ -0,0 +1,31 @@
+package xyz.nkomarn.harbor.folia;
+
+/**
+ * A monotonic clock counting server ticks, used by Harbor instead of the wall clock so that timing can be
+ * simulated by a {@link VirtualHarborScheduler}.
+ */
+@FunctionalInterface
+public interface TickClock {
+
+    /**
+     * A clock counting nominal ticks of 50ms since an arbitrary origin, based on {@link System#nanoTime()}; unlike
+     * the wall clock, it never jumps.
+     */
+    TickClock SYSTEM = () -> System.nanoTime() / 50_000_000L;
+
+    /**
+     * @return The current tick.
+     */
+    long getTick();
+
+    /**
+     * Converts minutes into ticks.
+     *
+     * @param minutes The amount of minutes.
+     *
+     * @return The amount of ticks.
+     */
+    static long minutesToTicks(long minutes) {
+        return minutes * 60L * 20L;
+    }
+}
@@ -0,0 +1,154 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.PriorityQueue;
+
+/**
+ * A {@link HarborScheduler} running on virtual time, for tests and benchmarks without a server. Nothing runs until
+ * ticks are advanced with {@link #advance(long)}, which runs every task that became due, in order of their due tick
+ * and then of submission; the same sequence of calls always runs the same tasks in the same order.
+ * <p>
+ * There are no threads involved: asynchronous tasks run on the thread advancing the scheduler, just like all
+ * other tasks, and entities are never retired.
+ */
+public final class VirtualHarborScheduler implements HarborScheduler, TickClock {
+    private final PriorityQueue<Scheduled> queue = new PriorityQueue<>();
+    private long tick;
+    private long sequence;
+
+    @Override
+    public synchronized long getTick() {
+        return tick;
+    }
+
+    @NotNull
+    @Override
+    public TickClock getClock() {
+        return this;
+    }
+
+    @Override
+    public boolean isPrimaryThread() {
+        // Every task runs on the thread advancing the scheduler
+        return true;
+    }
+
+    /**
+     * @return The amount of tasks waiting to run.
+     */
+    public synchronized int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * Advances time by a given amount of ticks, running every task that becomes due on the way; tasks scheduled
+     * by those tasks run as well once they are due.
+     *
+     * @param ticks The amount of ticks to advance.
+     *
+     * @return The amount of tasks that ran.
+     */
+    public int advance(long ticks) {
+        long target;
+        synchronized (this) {
+            target = tick + ticks;
+        }
+
+        int ran = 0;
+        while (true) {
+            Scheduled next;
+            synchronized (this) {
+                Scheduled head = queue.peek();
+                if (head == null || head.due > target) {
+                    tick = target;
+                    return ran;
+                }
+                next = queue.poll();
+                tick = Math.max(tick, next.due);
+            }
+
+            if (next.runnable != null && next.runnable.isCancelled()) {
+                continue;
+            }
+
+            next.task.run();
+            ran++;
+
+            if (next.period > 0 && !next.runnable.isCancelled()) {
+                enqueue(next.period, next.period, next.runnable, next.task);
+            }
+        }
+    }
+
+    @Override
+    public void runTaskLater(@Nullable Location loc, @NotNull Runnable task, long delay) {
+        enqueue(delay, 0, null, task);
+    }
+
+    @Override
+    public void runTaskTimer(@Nullable Location loc, @NotNull FoliaRunnable runnable, long delay, long period) {
+        schedule(runnable, delay, period);
+    }
+
+    @Override
+    public void runTaskTimerAsynchronously(@NotNull FoliaRunnable runnable, long delay, long period) {
+        schedule(runnable, delay, period);
+    }
+
+    @Override
+    public void runTaskAsynchronously(@NotNull Runnable task) {
+        enqueue(0, 0, null, task);
+    }
+
+    @Override
+    public void runTask(@Nullable Location loc, @NotNull Runnable task) {
+        enqueue(0, 0, null, task);
+    }
+
+    @Override
+    public boolean runAtEntity(@NotNull Entity entity, @NotNull Runnable task, @Nullable Runnable retired) {
+        enqueue(1, 0, null, task);
+        return true;
+    }
+
+    @Override
+    public void runAtEntityTimer(@NotNull Entity entity, @NotNull FoliaRunnable runnable, @Nullable Runnable retired, long delay, long period) {
+        schedule(runnable, delay, period);
+    }
+
+    private void schedule(@NotNull FoliaRunnable runnable, long delay, long period) {
+        enqueue(delay, Math.max(1L, period), runnable, runnable);
+        runnable.markRepeating();
+    }
+
+    private synchronized void enqueue(long delay, long period, @Nullable FoliaRunnable runnable, @NotNull Runnable task) {
+        // Like on a server, a task never runs in the same tick it was scheduled in
+        queue.add(new Scheduled(tick + Math.max(1L, delay), period, sequence++, runnable, task));
+    }
+
+    private static final class Scheduled implements Comparable<Scheduled> {
+        private final long due;
+        private final long period;
+        private final long sequence;
+        private final FoliaRunnable runnable;
+        private final Runnable task;
+
+        private Scheduled(long due, long period, long sequence, @Nullable FoliaRunnable runnable, @NotNull Runnable task) {
+            this.due = due;
+            this.period = period;
+            this.sequence = sequence;
+            this.runnable = runnable;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(@NotNull Scheduled other) {
+            int byDue = Long.compare(due, other.due);
+            return byDue != 0 ? byDue : Long.compare(sequence, other.sequence);
+        }
+    }
+}
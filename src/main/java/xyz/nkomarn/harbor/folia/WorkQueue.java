@@ -0,0 +1,245 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.nkomarn.harbor.util.WorldStateHolder;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects small tasks that have to run on a server thread, and drains them in a single scheduled task per tick
+ * instead of scheduling every one of them separately. Submitting a task from any thread is a single queue insert;
+ * only the first task after the queue went idle schedules a drain.
+ * <p>
+ * A drain stops once it used up its time budget, and the remaining tasks are carried over to the next tick, so a
+ * burst of work is spread over several ticks. On Folia, tasks are queued per region section, so each region
+ * drains its own work on its own thread; elsewhere there is a single queue drained on the main thread. A region
+ * queue is dropped once it was drained empty, and all queues of a world once it is unloaded.
+ */
+public final class WorkQueue implements WorldStateHolder {
+    // The time a drain may take per tick before it carries the remaining tasks over
+    private static final long BUDGET_NANOS = 2_000_000L;
+    // The size of a region cell in chunks, as a shift; matches Folia's default region section size, and as
+    // regions are made up of whole sections, every cell is owned by a single region
+    private static final int REGION_SHIFT = 4;
+    // Rough sizes of a region queue and of one waiting task, for the retained heap estimate
+    private static final int LANE_BYTES = 320;
+    private static final int TASK_BYTES = 32;
+
+    private final Lane global;
+    private final Map<RegionKey, Lane> regions;
+    private final boolean regionized;
+    private final Logger logger;
+    private final LongAdder submitted;
+    private final LongAdder coalesced;
+    private final LongAdder carriedOver;
+
+    WorkQueue(boolean regionized, @NotNull Logger logger) {
+        this.global = new Lane(null, null);
+        this.regions = new ConcurrentHashMap<>();
+        this.regionized = regionized;
+        this.logger = logger;
+        this.submitted = new LongAdder();
+        this.coalesced = new LongAdder();
+        this.carriedOver = new LongAdder();
+    }
+
+    /**
+     * Queues a task to run on the next tick. Safe to call from any thread.
+     *
+     * @param loc  The location where the task should run, or null for the main thread.
+     * @param task The task to run.
+     */
+    public void submit(@Nullable Location loc, @NotNull Runnable task) {
+        submitted.increment();
+        getLane(loc).add(task);
+    }
+
+    /**
+     * Queues a task to run on the next tick, unless a task with the same key is still waiting in the same queue;
+     * useful for tasks which only refresh some state, and would do the same work when run several times in a row.
+     * Safe to call from any thread.
+     *
+     * @param loc  The location where the task should run, or null for the main thread.
+     * @param key  The key identifying the task.
+     * @param task The task to run.
+     */
+    public void submit(@Nullable Location loc, @NotNull Object key, @NotNull Runnable task) {
+        Lane lane = getLane(loc);
+        if (!lane.pendingKeys.add(key)) {
+            coalesced.increment();
+            return;
+        }
+
+        submitted.increment();
+        lane.add(() -> {
+            lane.pendingKeys.remove(key);
+            task.run();
+        });
+    }
+
+    /**
+     * @return The amount of tasks currently waiting in any queue.
+     */
+    public int getPending() {
+        int pending = global.tasks.size();
+        for (Lane lane : regions.values()) {
+            pending += lane.tasks.size();
+        }
+        return pending;
+    }
+
+    /**
+     * @return The amount of tasks submitted since the plugin was enabled.
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return The amount of tasks dropped because an identical task was still waiting.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return The amount of times a drain ran out of budget and carried tasks over to the next tick.
+     */
+    public long getCarriedOver() {
+        return carriedOver.sum();
+    }
+
+    @Override
+    public void clearWorld(@NotNull UUID world) {
+        // A lane that still has a drain scheduled finishes its tasks on its own
+        regions.keySet().removeIf(key -> key.world.equals(world));
+    }
+
+    @Override
+    public int getTrackedWorlds() {
+        Set<UUID> worlds = new HashSet<>();
+        for (RegionKey key : regions.keySet()) {
+            worlds.add(key.world);
+        }
+        return worlds.size();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        long bytes = 0;
+        for (Lane lane : regions.values()) {
+            bytes += LANE_BYTES + (long) lane.tasks.size() * TASK_BYTES;
+        }
+        return bytes;
+    }
+
+    @NotNull
+    private Lane getLane(@Nullable Location loc) {
+        if (!regionized || loc == null || loc.getWorld() == null) {
+            return global;
+        }
+
+        RegionKey key = new RegionKey(loc.getWorld().getUID(), loc.getBlockX() >> (4 + REGION_SHIFT), loc.getBlockZ() >> (4 + REGION_SHIFT));
+        Lane lane = regions.get(key);
+        return lane != null ? lane : regions.computeIfAbsent(key, k -> new Lane(k, loc.clone()));
+    }
+
+    /**
+     * The tasks of a single region, or of the main thread.
+     */
+    private final class Lane {
+        private final RegionKey key;
+        private final Location location;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Set<Object> pendingKeys = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Runnable drain = this::drain;
+
+        private Lane(@Nullable RegionKey key, @Nullable Location location) {
+            this.key = key;
+            this.location = location;
+        }
+
+        private void add(@NotNull Runnable task) {
+            tasks.add(task);
+            if (scheduled.compareAndSet(false, true)) {
+                SchedulerUtils.runTask(location, drain);
+            }
+        }
+
+        private void drain() {
+            long deadline = System.nanoTime() + BUDGET_NANOS;
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    logger.log(Level.SEVERE, "A queued task failed", e);
+                }
+
+                if (System.nanoTime() >= deadline && !tasks.isEmpty()) {
+                    carriedOver.increment();
+                    SchedulerUtils.runTaskLater(location, drain, 1L);
+                    return;
+                }
+            }
+
+            scheduled.set(false);
+
+            // A task may have been added after the queue was seen empty, but before the flag was cleared
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                SchedulerUtils.runTask(location, drain);
+                return;
+            }
+
+            // Drop the idle lane; a task added to it in the meantime still schedules a drain of its own, and the
+            // next task for the region gets a new lane
+            if (key != null) {
+                regions.remove(key, this);
+            }
+        }
+    }
+
+    /**
+     * Identifies a cell of the region grid.
+     */
+    private static final class RegionKey {
+        private final UUID world;
+        private final int x;
+        private final int z;
+        private final int hash;
+
+        private RegionKey(@NotNull UUID world, int x, int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+            // Computed from the fields directly, as keys are built on every submit
+            this.hash = 31 * (31 * world.hashCode() + x) + z;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RegionKey)) return false;
+            RegionKey other = (RegionKey) o;
+            return x == other.x && z == other.z && world.equals(other.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
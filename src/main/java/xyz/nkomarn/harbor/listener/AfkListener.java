@@ -1,6 +1,8 @@
 package xyz.nkomarn.harbor.listener;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -15,23 +17,45 @@ import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.folia.FoliaRunnable;
 import xyz.nkomarn.harbor.folia.SchedulerUtils;
+import xyz.nkomarn.harbor.folia.TickClock;
 import xyz.nkomarn.harbor.provider.DefaultAFKProvider;
+import xyz.nkomarn.harbor.task.Checker;
+import xyz.nkomarn.harbor.util.HarborSettings;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Samples player activity for the {@link DefaultAFKProvider}. Every player is sampled once a second; elsewhere a
+ * single task works through a {@link SamplingRing}, while on Folia every player gets a task on their own entity
+ * scheduler, so positions are only ever read on the thread owning the player.
+ */
 public final class AfkListener implements Listener {
     private final DefaultAFKProvider afkProvider;
-    private Queue<AfkPlayer> players;
+    private SamplingRing players;
+    private MovementTable movementTable;
+    private Map<UUID, PlayerSampler> samplers;
     private PlayerMovementChecker movementChecker;
     private final Harbor harbor;
     private boolean status;
 
+    // The worlds in which AFK status can currently matter, only used in demand-driven mode
+    private volatile Set<UUID> demandedWorlds;
+    private volatile boolean demandDriven;
+    private final LongAdder sampledCount;
+    private final LongAdder skippedCount;
+
     public AfkListener(@NotNull DefaultAFKProvider afkProvider) {
         this.afkProvider = afkProvider;
         this.harbor = afkProvider.getHarbor();
+        this.demandedWorlds = Collections.emptySet();
+        this.sampledCount = new LongAdder();
+        this.skippedCount = new LongAdder();
         harbor.getLogger().info("Initializing fallback AFK detection system. Fallback AFK system is not enabled at this time");
         status = false;
     }
@@ -42,11 +66,17 @@ public final class AfkListener implements Listener {
     public void start() {
         if(!status) {
             status = true;
-            players = new ArrayDeque<>();
+            if (Harbor.usingFolia) {
+                samplers = new ConcurrentHashMap<>();
+            } else {
+                players = new SamplingRing();
+                movementTable = new MovementTable();
+            }
             movementChecker = new PlayerMovementChecker();
+            refreshDemand();
 
-            // Populate the queue with any existing players
-            players.addAll(Bukkit.getOnlinePlayers().stream().map((Function<Player, AfkPlayer>) AfkPlayer::new).collect(Collectors.toSet()));
+            // Populate the ring with any existing players
+            Bukkit.getOnlinePlayers().forEach(this::track);
 
             // Register listeners after populating the queue
             Bukkit.getServer().getPluginManager().registerEvents(this, harbor);
@@ -69,38 +99,162 @@ public final class AfkListener implements Listener {
             status = false;
             movementChecker.cancel();
             HandlerList.unregisterAll(this);
+            if (samplers != null) {
+                samplers.values().forEach(PlayerSampler::cancel);
+                samplers = null;
+            }
             players = null;
+            movementTable = null;
             harbor.getLogger().info("Fallback AFK detection system is disabled");
         } else {
             harbor.getLogger().info("Fallback AFK detection system was already disabled");
         }
     }
 
+    /**
+     * @return Whether the listener is currently sampling players.
+     */
+    public boolean isActive() {
+        return status;
+    }
+
+    /**
+     * @return Whether AFK detection only samples players in worlds where their AFK status can matter.
+     */
+    public boolean isDemandDriven() {
+        return demandDriven;
+    }
+
+    /**
+     * @return The amount of worlds in which players are currently sampled in demand-driven mode.
+     */
+    public int getDemandedWorldCount() {
+        return demandedWorlds.size();
+    }
+
+    /**
+     * @return The amount of players currently tracked.
+     */
+    public int getTrackedCount() {
+        if (!status) {
+            return 0;
+        }
+        return Harbor.usingFolia ? samplers.size() : players.size();
+    }
+
+    /**
+     * @return The amount of movement samples taken since the listener was created.
+     */
+    public long getSampledCount() {
+        return sampledCount.sum();
+    }
+
+    /**
+     * @return The amount of movement samples skipped by demand-driven mode since the listener was created.
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    /**
+     * Checks if the AFK status of a given player can currently matter; if not, its activity isn't tracked.
+     *
+     * @param player The player to check.
+     *
+     * @return Whether the player's activity should be tracked.
+     */
+    private boolean isDemanded(@NotNull Player player) {
+        return !demandDriven || demandedWorlds.contains(player.getWorld().getUID());
+    }
+
+    /**
+     * Recomputes the worlds in which AFK status can matter: eligible worlds in which players can sleep (at night
+     * or in a thunderstorm), or in which it will be night within the AFK timeout. Sampling resumes that early so
+     * a player's status is accurate again by dusk.
+     */
+    private void refreshDemand() {
+        HarborSettings settings = harbor.getConfiguration().getSettings();
+        demandDriven = settings.isAfkDemandDriven();
+        if (!demandDriven) {
+            return;
+        }
+
+        long warmup = TickClock.minutesToTicks(settings.getFallbackTimeout());
+        Checker checker = harbor.getChecker();
+        Set<UUID> worlds = new HashSet<>();
+        for (World world : harbor.getWorldRegistry().getEligibleWorlds()) {
+            if (checker.isSleepable(world) || checker.getTicksUntilNight(world) <= warmup) {
+                worlds.add(world.getUID());
+            }
+        }
+        demandedWorlds = worlds;
+    }
+
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onChat(AsyncPlayerChatEvent event) {
-        afkProvider.updateActivity(event.getPlayer());
+        if (isDemanded(event.getPlayer())) {
+            afkProvider.updateActivity(event.getPlayer());
+        }
     }
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onCommand(PlayerCommandPreprocessEvent event) {
-        afkProvider.updateActivity(event.getPlayer());
+        if (isDemanded(event.getPlayer())) {
+            afkProvider.updateActivity(event.getPlayer());
+        }
     }
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onInventoryClick(InventoryClickEvent event) {
-        afkProvider.updateActivity((Player) event.getWhoClicked());
+        Player player = (Player) event.getWhoClicked();
+        if (isDemanded(player)) {
+            afkProvider.updateActivity(player);
+        }
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onJoin(PlayerJoinEvent event) {
-        players.add(new AfkPlayer(event.getPlayer()));
+        track(event.getPlayer());
         afkProvider.updateActivity(event.getPlayer());
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onLeave(PlayerQuitEvent event) {
-        players.remove(new AfkPlayer(event.getPlayer()));
-        afkProvider.removePlayer(event.getPlayer().getUniqueId());
+        UUID uuid = event.getPlayer().getUniqueId();
+        if (Harbor.usingFolia) {
+            PlayerSampler sampler = samplers.remove(uuid);
+            if (sampler != null) {
+                sampler.cancel();
+            }
+        } else {
+            players.remove(uuid);
+        }
+        afkProvider.removePlayer(uuid);
+    }
+
+    /**
+     * Starts sampling the movement of a given player.
+     *
+     * @param player The player to track.
+     */
+    private void track(@NotNull Player player) {
+        if (Harbor.usingFolia) {
+            UUID uuid = player.getUniqueId();
+            PlayerSampler sampler = new PlayerSampler(uuid);
+            if (samplers.putIfAbsent(uuid, sampler) == null) {
+                // Spread the samples of all players over the second
+                Map<UUID, PlayerSampler> tracked = samplers;
+                long delay = 1 + Math.floorMod(uuid.hashCode(), 20);
+                SchedulerUtils.runAtEntityTimer(player, sampler, () -> tracked.remove(uuid, sampler), delay, 20);
+            }
+            return;
+        }
+
+        int id = players.add(player.getUniqueId());
+        if (id >= 0) {
+            HarborSettings settings = harbor.getConfiguration().getSettings();
+            movementTable.track(id, player, settings.getMovementTolerance(), settings.getRotationTolerance());
+        }
     }
 
     /**
@@ -108,57 +262,124 @@ public final class AfkListener implements Listener {
      */
     private final class PlayerMovementChecker extends FoliaRunnable {
         private double checksToMake = 0;
+        private int ticksUntilRefresh = 20;
         @Override
         public void run() {
-            if(players.isEmpty()){
+            afkProvider.tick();
+
+            // Which worlds need sampling only changes slowly, so it is recomputed once a second
+            if (--ticksUntilRefresh <= 0) {
+                ticksUntilRefresh = 20;
+                refreshDemand();
+            }
+
+            // On Folia, every player is sampled by their own PlayerSampler instead
+            if (Harbor.usingFolia) {
+                return;
+            }
+
+            if(players.size() == 0){
                 checksToMake = 0;
                 return;
             }
 
+            HarborSettings settings = harbor.getConfiguration().getSettings();
+            double movementTolerance = settings.getMovementTolerance();
+            double rotationTolerance = settings.getRotationTolerance();
+
             // We want every player to get a check every 20 ticks. Therefore we check 1/20th of the players
-            for (checksToMake += players.size() / 20D; checksToMake > 0 && !players.isEmpty(); checksToMake--) {
-                AfkPlayer afkPlayer = players.poll();
-                if (afkPlayer.changed()) {
-                    afkProvider.updateActivity(afkPlayer.player);
+            for (checksToMake += players.size() / 20D; checksToMake > 0 && players.size() > 0; checksToMake--) {
+                int id = players.next();
+                UUID uuid = players.getOwner(id);
+                Player player = Bukkit.getPlayer(uuid);
+
+                // The player left without us noticing (i.e. the quit event was missed)
+                if (player == null) {
+                    players.remove(uuid);
+                    afkProvider.removePlayer(uuid);
+                    continue;
+                }
+
+                if (!isDemanded(player)) {
+                    afkProvider.setPaused(player, true);
+                    skippedCount.increment();
+                    continue;
+                }
+
+                // The first sample after a pause compares against a stale position, so it counts as activity
+                afkProvider.setPaused(player, false);
+                sampledCount.increment();
+                if (movementTable.sample(id, player, movementTolerance, rotationTolerance)) {
+                    afkProvider.updateActivity(player);
                 }
-                players.add(afkPlayer);
             }
         }
     }
 
+    /**
+     * Internal class for sampling the movement of a single player on Folia; runs on the player's entity scheduler,
+     * so the player's position is read on the thread owning it. Only the player's unique id is kept, so a
+     * sampler outliving its player doesn't keep them from being collected
+     */
+    private final class PlayerSampler extends FoliaRunnable {
+        private final UUID uuid;
+        private final Location scratch = new Location(null, 0, 0, 0);
+        private boolean sampled;
+        private int x, y, z, yaw, pitch;
 
+        private PlayerSampler(@NotNull UUID uuid) {
+            this.uuid = uuid;
+        }
 
-    private static final class AfkPlayer {
-        private final Player player;
-        private int locationHash;
+        @Override
+        public void run() {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null) {
+                return;
+            }
 
-        public AfkPlayer(Player player) {
-            this.player = player;
-            locationHash = player.getEyeLocation().hashCode();
+            if (!isDemanded(player)) {
+                afkProvider.setPaused(player, true);
+                skippedCount.increment();
+                return;
+            }
+
+            afkProvider.setPaused(player, false);
+            sampledCount.increment();
+            HarborSettings settings = harbor.getConfiguration().getSettings();
+            if (sample(player, settings.getMovementTolerance(), settings.getRotationTolerance())) {
+                afkProvider.updateActivity(player);
+            }
         }
 
         /**
-         * Check if the player changed its position since the last check
+         * Samples the current eye position and rotation of the player.
+         *
+         * @param player            The player to sample.
+         * @param movementTolerance The movement in blocks that counts as moving.
+         * @param rotationTolerance The rotation in degrees that counts as moving.
          *
-         * @return true if the position changed
+         * @return Whether the player moved since the previous sample; the very first sample is only a baseline.
          */
-        boolean changed() {
-            int previousLocation = locationHash;
-            locationHash = player.getEyeLocation().hashCode();
-            return previousLocation != locationHash;
-        }
+        private boolean sample(@NotNull Player player, double movementTolerance, double rotationTolerance) {
+            player.getLocation(scratch);
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            AfkPlayer afkPlayer = (AfkPlayer) o;
-            return player.getUniqueId().equals(afkPlayer.player.getUniqueId());
-        }
+            int qx = MovementTable.quantize(scratch.getX(), movementTolerance);
+            int qy = MovementTable.quantize(scratch.getY() + player.getEyeHeight(), movementTolerance);
+            int qz = MovementTable.quantize(scratch.getZ(), movementTolerance);
+            int qyaw = MovementTable.quantize(scratch.getYaw(), rotationTolerance);
+            int qpitch = MovementTable.quantize(scratch.getPitch(), rotationTolerance);
+            scratch.setWorld(null);
 
-        @Override
-        public int hashCode() {
-            return player.getUniqueId().hashCode();
+            boolean moved = sampled && (x != qx || y != qy || z != qz || yaw != qyaw || pitch != qpitch);
+
+            sampled = true;
+            x = qx;
+            y = qy;
+            z = qz;
+            yaw = qyaw;
+            pitch = qpitch;
+            return moved;
         }
     }
 }
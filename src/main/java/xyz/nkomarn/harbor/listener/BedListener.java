@@ -1,6 +1,7 @@
 package xyz.nkomarn.harbor.listener;
 
-import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -10,13 +11,11 @@ import org.bukkit.event.player.PlayerBedLeaveEvent;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.folia.SchedulerUtils;
+import xyz.nkomarn.harbor.folia.TickClock;
 import xyz.nkomarn.harbor.task.Checker;
 import xyz.nkomarn.harbor.util.Messages;
 import xyz.nkomarn.harbor.util.PlayerManager;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-
 public class BedListener implements Listener {
 
     private final Harbor harbor;
@@ -35,31 +34,50 @@ public class BedListener implements Listener {
             return;
         }
 
+        harbor.getChecker().wake();
+
         Player player = event.getPlayer();
         if (isMessageSilenced(player)) {
             return;
         }
 
-        SchedulerUtils.runTaskLater(event.getBed().getLocation(), () -> {
-            playerManager.setCooldown(player, Instant.now());
+        Location bed = event.getBed().getLocation();
+        refreshSleeping(bed);
+        SchedulerUtils.queue(bed, () -> {
+            playerManager.setCooldown(player, SchedulerUtils.getClock().getTick());
             harbor.getMessages().sendWorldChatMessage(event.getBed().getWorld(), messages.prepareMessage(
-                    player, harbor.getConfiguration().getString("messages.chat.player-sleeping"))
+                    player, harbor.getConfiguration().getSettings().getPlayerSleepingMessage())
             );
-        }, 1);
+        });
     }
 
     @EventHandler(ignoreCancelled = true)
     public void onBedLeave(PlayerBedLeaveEvent event) {
+        harbor.getChecker().wake();
+
         if (isMessageSilenced(event.getPlayer())) {
             return;
         }
 
-        SchedulerUtils.runTaskLater(event.getBed().getLocation(), () -> {
-            playerManager.setCooldown(event.getPlayer(), Instant.now());
+        Location bed = event.getBed().getLocation();
+        refreshSleeping(bed);
+        SchedulerUtils.queue(bed, () -> {
+            playerManager.setCooldown(event.getPlayer(), SchedulerUtils.getClock().getTick());
             harbor.getMessages().sendWorldChatMessage(event.getBed().getWorld(), messages.prepareMessage(
-                    event.getPlayer(), harbor.getConfiguration().getString("messages.chat.player-left-bed"))
+                    event.getPlayer(), harbor.getConfiguration().getSettings().getPlayerLeftBedMessage())
             );
-        }, 1);
+        });
+    }
+
+    /**
+     * Queues a refresh of the sleeping count of the world a bed is in, before any message mentioning it is sent.
+     * Refreshes of the same world that are still waiting are coalesced into one.
+     *
+     * @param bed The location of the bed.
+     */
+    private void refreshSleeping(@NotNull Location bed) {
+        World world = bed.getWorld();
+        SchedulerUtils.queue(bed, "refresh-sleeping:" + world.getUID(), () -> harbor.getChecker().refreshSleeping(world));
     }
 
     /**
@@ -77,7 +95,7 @@ public class BedListener implements Listener {
             return true;
         }
 
-        int cooldown = harbor.getConfiguration().getInteger("messages.chat.message-cooldown");
-        return playerManager.getCooldown(player).until(Instant.now(), ChronoUnit.MINUTES) < cooldown;
+        int cooldown = harbor.getConfiguration().getSettings().getMessageCooldown();
+        return playerManager.isOnCooldown(player, TickClock.minutesToTicks(cooldown));
     }
 }
@@ -0,0 +1,87 @@
+package xyz.nkomarn.harbor.listener;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Stores the last sampled eye position and rotation of every tracked player as quantized primitives, one array
+ * per component and indexed by the player's {@link SamplingRing} id. Positions are read into a single reused
+ * {@link Location}, so sampling a player allocates nothing; a player counts as moved once any component crossed
+ * into another tolerance step.
+ */
+final class MovementTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private int[] x = new int[INITIAL_CAPACITY];
+    private int[] y = new int[INITIAL_CAPACITY];
+    private int[] z = new int[INITIAL_CAPACITY];
+    private int[] yaw = new int[INITIAL_CAPACITY];
+    private int[] pitch = new int[INITIAL_CAPACITY];
+
+    /**
+     * Stores the current position of a newly tracked player as its baseline.
+     *
+     * @param slot              The slot of the player, as assigned by the {@link SamplingRing}.
+     * @param player            The player to track.
+     * @param movementTolerance The movement in blocks that counts as moving.
+     * @param rotationTolerance The rotation in degrees that counts as moving.
+     */
+    void track(int slot, @NotNull Player player, double movementTolerance, double rotationTolerance) {
+        if (slot >= x.length) {
+            grow(Math.max(slot + 1, x.length * 2));
+        }
+        sample(slot, player, movementTolerance, rotationTolerance);
+    }
+
+    /**
+     * Samples the current eye position and rotation of a player into its slot.
+     *
+     * @param slot              The slot of the player.
+     * @param player            The player to sample.
+     * @param movementTolerance The movement in blocks that counts as moving.
+     * @param rotationTolerance The rotation in degrees that counts as moving.
+     *
+     * @return Whether the player moved since the previous sample.
+     */
+    boolean sample(int slot, @NotNull Player player, double movementTolerance, double rotationTolerance) {
+        player.getLocation(scratch);
+
+        int qx = quantize(scratch.getX(), movementTolerance);
+        int qy = quantize(scratch.getY() + player.getEyeHeight(), movementTolerance);
+        int qz = quantize(scratch.getZ(), movementTolerance);
+        int qyaw = quantize(scratch.getYaw(), rotationTolerance);
+        int qpitch = quantize(scratch.getPitch(), rotationTolerance);
+        scratch.setWorld(null);
+
+        boolean moved = x[slot] != qx || y[slot] != qy || z[slot] != qz || yaw[slot] != qyaw || pitch[slot] != qpitch;
+
+        x[slot] = qx;
+        y[slot] = qy;
+        z[slot] = qz;
+        yaw[slot] = qyaw;
+        pitch[slot] = qpitch;
+        return moved;
+    }
+
+    /**
+     * @param value     The value to quantize.
+     * @param tolerance The size of a step.
+     *
+     * @return The index of the step the value falls into.
+     */
+    static int quantize(double value, double tolerance) {
+        return (int) Math.floor(value / tolerance);
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        yaw = Arrays.copyOf(yaw, capacity);
+        pitch = Arrays.copyOf(pitch, capacity);
+    }
+}
@@ -0,0 +1,131 @@
+package xyz.nkomarn.harbor.listener;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The round-robin order in which the fallback AFK detection samples players. Every tracked player gets a
+ * stable id, which also indexes the {@link MovementTable}; ids of players who left are reused. The sampling
+ * order is a dense array of ids with swap-removal, so both adding and removing a player take constant time,
+ * and only player ids (never {@link org.bukkit.entity.Player} objects) are retained.
+ */
+final class SamplingRing {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<UUID, Integer> ids = new HashMap<>();
+    private UUID[] owners = new UUID[INITIAL_CAPACITY];
+
+    // The ids in sampling order, and the position of every id in that order
+    private int[] ring = new int[INITIAL_CAPACITY];
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int size;
+    private int cursor;
+
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int allocated;
+
+    /**
+     * Starts tracking a player.
+     *
+     * @param uuid The unique id of the player.
+     *
+     * @return The id of the player, or -1 if the player is already tracked.
+     */
+    int add(@NotNull UUID uuid) {
+        if (ids.containsKey(uuid)) {
+            return -1;
+        }
+
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (allocated == owners.length) {
+                grow();
+            }
+            id = allocated++;
+        }
+
+        ids.put(uuid, id);
+        owners[id] = uuid;
+        ring[size] = id;
+        positions[id] = size;
+        size++;
+        return id;
+    }
+
+    /**
+     * Stops tracking a player.
+     *
+     * @param uuid The unique id of the player.
+     *
+     * @return Whether the player was tracked.
+     */
+    boolean remove(@NotNull UUID uuid) {
+        Integer id = ids.remove(uuid);
+        if (id == null) {
+            return false;
+        }
+
+        // Move the last id into the freed position. If this pass already went past that position, the last
+        // visited id fills it instead and the last id takes its place right at the cursor, so the last id isn't
+        // skipped for a whole pass
+        int position = positions[id];
+        int last = ring[--size];
+        if (position < cursor) {
+            int visited = ring[--cursor];
+            ring[position] = visited;
+            positions[visited] = position;
+            position = cursor;
+        }
+        ring[position] = last;
+        positions[last] = position;
+        if (cursor > size) {
+            cursor = 0;
+        }
+
+        owners[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        return true;
+    }
+
+    /**
+     * @return The id of the next player to sample; the ring must not be empty.
+     */
+    int next() {
+        if (cursor >= size) {
+            cursor = 0;
+        }
+        return ring[cursor++];
+    }
+
+    /**
+     * @param id The id of a tracked player.
+     *
+     * @return The unique id of the player, or null if the id is not in use.
+     */
+    @Nullable
+    UUID getOwner(int id) {
+        return owners[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int capacity = owners.length * 2;
+        owners = Arrays.copyOf(owners, capacity);
+        ring = Arrays.copyOf(ring, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+    }
+}
@@ -0,0 +1,250 @@
+package xyz.nkomarn.harbor.provider;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * A hashed timing wheel holding the AFK deadline of every tracked player, keyed by server tick. Players are
+ * identified by small integer ids; their deadlines and bucket links are kept in plain arrays, so arming an
+ * entry or advancing the wheel never allocates.
+ * <p>
+ * The last activity of every id is published into a lock-free store, so activity can be recorded from any
+ * thread without touching the wheel. The wheel is only re-armed lazily: when an entry's deadline comes up, it
+ * is pushed back to the latest activity plus the timeout, and only moved into the AFK state if there was none.
+ * <p>
+ * Entries can be frozen while their activity isn't tracked; a frozen entry is disarmed and keeps its AFK state,
+ * and gets a fresh timeout once it is thawed.
+ */
+final class AfkTimingWheel {
+    // The amount of buckets; a power of two so the bucket of a tick is a mask away
+    private static final int WHEEL_SIZE = 1024;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int[] heads = new int[WHEEL_SIZE];
+    private long[] deadlines = new long[INITIAL_CAPACITY];
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int[] prev = new int[INITIAL_CAPACITY];
+    private final BitSet armed = new BitSet();
+    private final BitSet frozen = new BitSet();
+
+    // The tick of every id's last activity, or -(tick + 1) once the id became AFK
+    private volatile AtomicLongArray activity = new AtomicLongArray(INITIAL_CAPACITY);
+    // Set while the store is being copied into a larger one
+    private volatile boolean growing;
+
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int size;
+    private volatile long tick;
+
+    AfkTimingWheel() {
+        Arrays.fill(heads, NONE);
+    }
+
+    /**
+     * Allocates an id for a newly tracked player, arming it with a given timeout.
+     *
+     * @param timeout The timeout in ticks.
+     *
+     * @return The id of the new entry.
+     */
+    synchronized int allocate(long timeout) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (size == deadlines.length) {
+                grow();
+            }
+            id = size++;
+        }
+
+        frozen.clear(id);
+        activity.set(id, tick);
+        arm(id, tick + timeout);
+        return id;
+    }
+
+    /**
+     * Stops tracking an entry and makes its id available again.
+     *
+     * @param id The id to release.
+     */
+    synchronized void release(int id) {
+        unlink(id);
+        frozen.clear(id);
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Records activity of an entry. Doesn't lock unless the entry was AFK until now; safe to call from any thread.
+     *
+     * @param id      The id of the entry.
+     * @param timeout The timeout in ticks.
+     *
+     * @return Whether the entry was AFK until now.
+     */
+    boolean touch(int id, long timeout) {
+        long now = tick;
+        boolean wasAfk = false;
+
+        // The store may be replaced by a larger copy while we write to it, in which case we write again. A grow
+        // in progress may already have copied our slot, so wait for it to publish the copy and write into that
+        while (true) {
+            AtomicLongArray store = activity;
+            wasAfk |= store.getAndSet(id, now) < 0;
+            if (growing) {
+                synchronized (this) {
+                    // Growing happens under the lock, so once we hold it the larger store has been published
+                }
+                continue;
+            }
+            if (store == activity) {
+                break;
+            }
+        }
+
+        if (wasAfk) {
+            synchronized (this) {
+                if (!frozen.get(id)) {
+                    arm(id, now + timeout);
+                }
+            }
+        }
+        return wasAfk;
+    }
+
+    /**
+     * Stops the timeout of an entry until it is thawed; its AFK state is kept as it is.
+     *
+     * @param id The id of the entry.
+     */
+    synchronized void freeze(int id) {
+        if (!frozen.get(id)) {
+            frozen.set(id);
+            unlink(id);
+        }
+    }
+
+    /**
+     * Restarts the timeout of a frozen entry, counting from now unless the entry is AFK.
+     *
+     * @param id      The id of the entry.
+     * @param timeout The timeout in ticks.
+     */
+    synchronized void thaw(int id, long timeout) {
+        if (!frozen.get(id)) {
+            return;
+        }
+        frozen.clear(id);
+
+        // An AFK entry is armed again by the activity that ends its AFK state
+        long last = activity.get(id);
+        if (last < 0) {
+            return;
+        }
+
+        // Only touches can race with this, and those only move the activity forward
+        long now = tick;
+        activity.compareAndSet(id, last, Math.max(last, now));
+        arm(id, now + timeout);
+    }
+
+    /**
+     * @param id The id of the entry.
+     *
+     * @return Whether the entry is currently AFK.
+     */
+    boolean isAfk(int id) {
+        return activity.get(id) < 0;
+    }
+
+    /**
+     * Advances the wheel by one tick, moving every entry whose timeout passed without activity into the AFK state.
+     *
+     * @param timeout The timeout in ticks.
+     * @param expired Called with the id of every entry that just became AFK.
+     */
+    synchronized void advance(long timeout, IntConsumer expired) {
+        long now = ++tick;
+
+        int id = heads[(int) (now & MASK)];
+        while (id != NONE) {
+            int following = next[id];
+            if (deadlines[id] <= now) {
+                unlink(id);
+
+                long last = activity.get(id);
+                if (last >= 0) {
+                    if (last + timeout > now) {
+                        arm(id, last + timeout);
+                    } else if (activity.compareAndSet(id, last, -last - 1)) {
+                        expired.accept(id);
+                    } else {
+                        // Touched in the meantime
+                        arm(id, now + timeout);
+                    }
+                }
+            }
+            id = following;
+        }
+    }
+
+    private void arm(int id, long deadline) {
+        unlink(id);
+        deadlines[id] = deadline;
+
+        int bucket = (int) (deadline & MASK);
+        int head = heads[bucket];
+        next[id] = head;
+        prev[id] = NONE;
+        if (head != NONE) {
+            prev[head] = id;
+        }
+        heads[bucket] = id;
+        armed.set(id);
+    }
+
+    private void unlink(int id) {
+        if (!armed.get(id)) {
+            return;
+        }
+
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else {
+            heads[(int) (deadlines[id] & MASK)] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+        armed.clear(id);
+    }
+
+    private void grow() {
+        int capacity = deadlines.length * 2;
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+
+        // Lock-free writers re-check the flag after writing, so no write made during the copy gets lost
+        growing = true;
+        try {
+            AtomicLongArray current = activity;
+            AtomicLongArray grown = new AtomicLongArray(capacity);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            activity = grown;
+        } finally {
+            growing = false;
+        }
+    }
+}
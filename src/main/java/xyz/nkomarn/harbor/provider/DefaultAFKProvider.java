@@ -1,59 +1,135 @@
 package xyz.nkomarn.harbor.provider;
 
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Listener;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.api.AFKProvider;
+import xyz.nkomarn.harbor.api.PlayerAfkStateChangeEvent;
+import xyz.nkomarn.harbor.folia.SchedulerUtils;
+import xyz.nkomarn.harbor.folia.TickClock;
 import xyz.nkomarn.harbor.listener.AfkListener;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 
 /**
- * The default AFK provider, which should be disabled if any others are registered
+ * The default AFK provider, which should be disabled if any others are registered. AFK timeouts are kept in an
+ * {@link AfkTimingWheel} that is advanced every tick, so a player becomes AFK exactly when their timeout expires
+ * and a {@link PlayerAfkStateChangeEvent} is called on every transition.
  */
 public final class DefaultAFKProvider implements AFKProvider, Listener {
     private final boolean enabled;
-    private Map<UUID, Instant> playerActivity;
+    private AfkTimingWheel wheel;
+    private Map<UUID, Integer> ids;
+    private Map<Integer, UUID> owners;
+    private final IntConsumer expiredHandler;
     private final AfkListener listener;
-    private final int timeout;
     private final Harbor harbor;
 
     public DefaultAFKProvider(@NotNull Harbor harbor) {
         this.harbor = harbor;
-        if (enabled = (harbor.getConfig().getBoolean("afk-detection.fallback-enabled", true))) {
-            timeout = harbor.getConfig().getInt("afk-detection.fallback-timeout", 15);
+        this.expiredHandler = this::onExpired;
+        if (enabled = harbor.getConfiguration().getSettings().isFallbackAfkEnabled()) {
             listener = new AfkListener(this);
             enableListeners();
         } else {
             harbor.getLogger().info("Not registering fallback AFK detection system.");
             listener = null;
-            timeout = -1;
         }
     }
 
     @Override
     public boolean isAFK(Player player) {
-        if (!enabled || !playerActivity.containsKey(player.getUniqueId())) {
+        if (!enabled) {
             return false;
         }
 
-        long minutes = playerActivity.get(player.getUniqueId()).until(Instant.now(), ChronoUnit.MINUTES);
-        return minutes >= timeout;
+        Integer id = ids.get(player.getUniqueId());
+        return id != null && wheel.isAfk(id);
     }
 
     /**
-     * Sets the given player's last activity to the current timestamp.
+     * Records activity of the given player, resetting their AFK timeout. Safe to call from any thread.
      *
      * @param player The player to update.
      */
     public void updateActivity(@NotNull Player player) {
-        playerActivity.put(player.getUniqueId(), Instant.now());
+        Integer id = ids.get(player.getUniqueId());
+        if (id == null) {
+            id = ids.computeIfAbsent(player.getUniqueId(), uuid -> {
+                int allocated = wheel.allocate(getTimeoutTicks());
+                owners.put(allocated, uuid);
+                return allocated;
+            });
+        }
+
+        if (wheel.touch(id, getTimeoutTicks())) {
+            transition(player, false);
+        }
+    }
+
+    /**
+     * Pauses or resumes the AFK timeout of the given player, i.e. while their activity isn't tracked because
+     * their AFK status can't matter. A paused player keeps their AFK state; once resumed, their timeout starts
+     * over.
+     *
+     * @param player The player to update.
+     * @param paused Whether the player's timeout should be paused.
+     */
+    public void setPaused(@NotNull Player player, boolean paused) {
+        Integer id = ids.get(player.getUniqueId());
+        if (id == null) {
+            return;
+        }
+
+        if (paused) {
+            wheel.freeze(id);
+        } else {
+            wheel.thaw(id, getTimeoutTicks());
+        }
+    }
+
+    /**
+     * Advances the AFK timeouts by one tick; called every tick by the {@link AfkListener}.
+     */
+    public void tick() {
+        wheel.advance(getTimeoutTicks(), expiredHandler);
+    }
+
+    /**
+     * @return The configured AFK timeout in ticks.
+     */
+    private long getTimeoutTicks() {
+        return TickClock.minutesToTicks(harbor.getConfiguration().getSettings().getFallbackTimeout());
+    }
+
+    private void onExpired(int id) {
+        UUID uuid = owners.get(id);
+        Player player = uuid == null ? null : Bukkit.getPlayer(uuid);
+        if (player != null) {
+            transition(player, true);
+        }
+    }
+
+    /**
+     * Has a player's exclusion state re-evaluated and announces its new AFK state, on the thread owning it.
+     *
+     * @param player The player whose state changed.
+     * @param afk    Whether the player is now AFK.
+     */
+    private void transition(@NotNull Player player, boolean afk) {
+        SchedulerUtils.runAtEntity(player, () -> {
+            if (player.isOnline()) {
+                harbor.getExclusionIndex().invalidate(player);
+                harbor.getServer().getPluginManager().callEvent(new PlayerAfkStateChangeEvent(player, afk));
+            }
+        }, null);
     }
 
 
@@ -63,7 +139,9 @@ public final class DefaultAFKProvider implements AFKProvider, Listener {
     public void enableListeners() {
         if (enabled) {
             harbor.getLogger().log(Level.FINE, "Enabling listeners for Default AFK Provider");
-            playerActivity = new HashMap<>();
+            wheel = new AfkTimingWheel();
+            ids = new ConcurrentHashMap<>();
+            owners = new ConcurrentHashMap<>();
             listener.start();
         }
     }
@@ -75,13 +153,27 @@ public final class DefaultAFKProvider implements AFKProvider, Listener {
         if (enabled) {
             harbor.getLogger().log(Level.FINE, "Disabling listeners for Default AFK Provider");
             listener.stop();
-            playerActivity = null;
+            wheel = null;
+            ids = null;
+            owners = null;
         }
     }
 
 
     public void removePlayer(UUID uniqueId) {
-        playerActivity.remove(uniqueId);
+        Integer id = ids.remove(uniqueId);
+        if (id != null) {
+            owners.remove(id);
+            wheel.release(id);
+        }
+    }
+
+    /**
+     * @return The listener sampling player activity, or null if the fallback detection is disabled.
+     */
+    @Nullable
+    public AfkListener getListener() {
+        return listener;
     }
 
     @NotNull
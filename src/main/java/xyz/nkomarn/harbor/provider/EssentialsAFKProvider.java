@@ -2,31 +2,69 @@ package xyz.nkomarn.harbor.provider;
 
 import com.earth2me.essentials.Essentials;
 import com.earth2me.essentials.User;
+import net.ess3.api.events.AfkStatusChangeEvent;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.api.AFKProvider;
+import xyz.nkomarn.harbor.folia.SchedulerUtils;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An {@link AFKProvider} that uses Essentials; can be used as an example of how external
  * plugins can implement an {@link AFKProvider}
+ * <p>
+ * Rather than asking Essentials on every check, it follows Essentials' AFK status changes
+ * and keeps the AFK players in a set
  */
-public final class EssentialsAFKProvider implements AFKProvider {
+public final class EssentialsAFKProvider implements AFKProvider, Listener {
     private final Harbor harbor;
-    private final Essentials essentials;
+    private final Set<UUID> afkPlayers;
 
     public EssentialsAFKProvider(@NotNull Harbor harbor, @NotNull Essentials essentials) {
         this.harbor = harbor;
-        this.essentials = essentials;
+        this.afkPlayers = ConcurrentHashMap.newKeySet();
+
+        // Seed the set with any players that are already AFK (i.e. after a reload)
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            User user = essentials.getUser(player);
+            if (user != null && user.isAfk()) {
+                afkPlayers.add(player.getUniqueId());
+            }
+        }
+
+        harbor.getServer().getPluginManager().registerEvents(this, harbor);
     }
 
     @Override
     public boolean isAFK(Player player) {
-        if(harbor.getConfig().getBoolean("afk-detection.essentials-enabled", true)) {
-            User user = essentials.getUser(player);
-            return user != null && user.isAfk();
-        } else {
-            return false;
+        return harbor.getConfiguration().getSettings().isEssentialsAfkEnabled() && afkPlayers.contains(player.getUniqueId());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onAfkStatusChange(AfkStatusChangeEvent event) {
+        Player player = event.getAffected().getBase();
+        boolean changed = event.getValue() ? afkPlayers.add(player.getUniqueId()) : afkPlayers.remove(player.getUniqueId());
+
+        if (changed) {
+            SchedulerUtils.runAtEntity(player, () -> {
+                if (player.isOnline()) {
+                    harbor.getExclusionIndex().invalidate(player);
+                }
+            }, null);
         }
     }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        afkPlayers.remove(event.getPlayer().getUniqueId());
+    }
 }
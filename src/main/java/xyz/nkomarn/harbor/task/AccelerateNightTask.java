@@ -5,8 +5,9 @@ import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.folia.FoliaRunnable;
+import xyz.nkomarn.harbor.folia.HarborScheduler;
 import xyz.nkomarn.harbor.folia.SchedulerUtils;
-import xyz.nkomarn.harbor.util.Config;
+import xyz.nkomarn.harbor.util.HarborSettings;
 
 public class AccelerateNightTask extends FoliaRunnable {
 
@@ -15,30 +16,34 @@ public class AccelerateNightTask extends FoliaRunnable {
     private final World world;
 
     public AccelerateNightTask(@NotNull Harbor harbor, @NotNull Checker checker, @NotNull World world) {
+        this(harbor, checker, world, SchedulerUtils.getScheduler());
+    }
+
+    public AccelerateNightTask(@NotNull Harbor harbor, @NotNull Checker checker, @NotNull World world, @NotNull HarborScheduler scheduler) {
         this.harbor = harbor;
         this.checker = checker;
         this.world = world;
 
-        harbor.getMessages().sendRandomChatMessage(world, "messages.chat.night-skipping");
+        harbor.getMessages().sendRandomChatMessage(world, harbor.getConfiguration().getSettings().getNightSkippingMessages());
         checker.clearWeather(world);
-        SchedulerUtils.runTaskTimer(null, this, 1, 1);
+        scheduler.runTaskTimer(null, this, 1, 1);
     }
 
     @Override
     public void run() {
-        Config config = harbor.getConfiguration();
+        HarborSettings settings = harbor.getConfiguration().getSettings();
 
         long time = world.getTime();
-        double timeRate = config.getInteger("night-skip.time-rate");
-        int dayTime = Math.max(150, config.getInteger("night-skip.daytime-ticks"));
-        int sleeping = checker.getSleepingPlayers(world).size();
+        double timeRate = settings.getTimeRate();
+        int dayTime = Math.max(150, settings.getDaytimeTicks());
+        int sleeping = checker.getSleepingCount(world);
 
-        if (config.getBoolean("night-skip.proportional-acceleration")) {
-            timeRate = Math.min(timeRate, Math.round(timeRate / world.getPlayers().size() * Math.max(1, sleeping)));
+        if (settings.isProportionalAcceleration()) {
+            timeRate = Math.min(timeRate, Math.round(timeRate / Math.max(1, harbor.getSleepIndex().getPlayerCount(world)) * Math.max(1, sleeping)));
         }
 
         if (time >= (dayTime - timeRate * 1.5) && time <= dayTime) {
-            if (config.getBoolean("night-skip.reset-phantom-statistic")) {
+            if (settings.isResetPhantomStatistic()) {
                 world.getPlayers().forEach(player -> player.setStatistic(Statistic.TIME_SINCE_REST, 0));
             }
 
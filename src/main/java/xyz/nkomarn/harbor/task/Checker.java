@@ -1,116 +1,441 @@
 package xyz.nkomarn.harbor.task;
 
-import org.bukkit.Bukkit;
+import net.md_5.bungee.api.chat.BaseComponent;
+import org.bukkit.GameRule;
 import org.bukkit.World;
+import org.bukkit.boss.BarColor;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
-import org.bukkit.entity.Pose;
 import org.bukkit.metadata.MetadataValue;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.api.BatchExclusionProvider;
 import xyz.nkomarn.harbor.api.ExclusionProvider;
+import xyz.nkomarn.harbor.api.WorldSleepSnapshot;
 import xyz.nkomarn.harbor.folia.FoliaRunnable;
+import xyz.nkomarn.harbor.folia.HarborScheduler;
+import xyz.nkomarn.harbor.folia.RegionSleepAggregator;
 import xyz.nkomarn.harbor.folia.SchedulerUtils;
 import xyz.nkomarn.harbor.provider.GameModeExclusionProvider;
-import xyz.nkomarn.harbor.util.Config;
+import xyz.nkomarn.harbor.util.BatchExclusionCache;
+import xyz.nkomarn.harbor.util.ExclusionPipeline;
+import xyz.nkomarn.harbor.util.HarborSettings;
 import xyz.nkomarn.harbor.util.Messages;
+import xyz.nkomarn.harbor.util.WorldStateHolder;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.UUID;
-
-import static java.util.stream.Collectors.toList;
-
-public class Checker extends FoliaRunnable {
-    private final Set<ExclusionProvider> providers;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Checker extends FoliaRunnable implements WorldStateHolder {
+    // Rough sizes of a snapshot, a skip state and a running night skip, for the retained heap estimate
+    private static final int SNAPSHOT_BYTES = 96;
+    private static final int STATE_BYTES = 64;
+    private static final int ACCELERATOR_BYTES = 128;
+
+    // The time span in which players can sleep, in world ticks
+    private static final long NIGHT_START = 12950;
+    private static final long NIGHT_END = 23950;
+    private static final long DAY_LENGTH = 24000;
+
+    // The longest the checker sleeps at once, so changes Harbor has no event for (i.e. /time set) are picked up
+    private static final long MAX_DELAY = 6000;
+    // While nobody is in bed, the check interval doubles up to this many times
+    private static final int MAX_BACKOFF = 3;
+
+    private final ExclusionPipeline pipeline;
+    private final BatchExclusionCache batchExclusions;
     private final Harbor harbor;
-    private final Set<UUID> skippingWorlds;
+    private final HarborScheduler scheduler;
+    private final Map<UUID, AtomicReference<SkipState>> states;
+    private final Map<UUID, WorldSleepSnapshot> snapshots;
+    private final Map<UUID, AccelerateNightTask> accelerators;
+    private final RegionSleepAggregator aggregator;
+    private final CaptureBuffer buffer;
+    private final AtomicBoolean computing;
+    private final AtomicBoolean wakePending;
+    private final AtomicLong generation;
+    private int checks;
+    private volatile int idleChecks;
+    private volatile long nextDelay;
+    private volatile long captureNanos;
+    private volatile long applyNanos;
 
     public Checker(@NotNull Harbor harbor) {
+        this(harbor, SchedulerUtils.getScheduler());
+    }
+
+    /**
+     * Creates a checker running on a given scheduler, i.e. a {@link xyz.nkomarn.harbor.folia.VirtualHarborScheduler}
+     * to simulate nights without a server scheduler.
+     *
+     * @param harbor    The plugin instance.
+     * @param scheduler The scheduler running the checks and night skips.
+     */
+    public Checker(@NotNull Harbor harbor, @NotNull HarborScheduler scheduler) {
         this.harbor = harbor;
-        this.skippingWorlds = new HashSet<>();
-        this.providers = new HashSet<>();
+        this.scheduler = scheduler;
+        this.states = new ConcurrentHashMap<>();
+        this.snapshots = new ConcurrentHashMap<>();
+        this.accelerators = new ConcurrentHashMap<>();
+        this.aggregator = Harbor.usingFolia ? new RegionSleepAggregator(harbor) : null;
+        this.buffer = new CaptureBuffer();
+        this.computing = new AtomicBoolean();
+        this.wakePending = new AtomicBoolean();
+        this.generation = new AtomicLong();
+        this.pipeline = new ExclusionPipeline();
+        this.batchExclusions = new BatchExclusionCache(harbor);
 
         // GameModeExclusionProvider checks each case on its own
-        providers.add(new GameModeExclusionProvider(harbor));
+        pipeline.add("gamemode", 20, new GameModeExclusionProvider(harbor));
 
         // The others are simple enough that we can use lambdas
-        providers.add(player -> harbor.getConfig().getBoolean("exclusions.ignored-permission", true) && player.hasPermission("harbor.ignored"));
-        providers.add(player -> harbor.getConfig().getBoolean("exclusions.exclude-vanished", false) && isVanished(player));
-        providers.add(player -> harbor.getConfig().getBoolean("exclusions.exclude-afk", false) && harbor.getPlayerManager().isAfk(player));
+        pipeline.add("permission", 300, player -> harbor.getConfiguration().getSettings().isIgnoredPermission() && player.hasPermission("harbor.ignored"));
+        pipeline.add("afk", 500, player -> harbor.getConfiguration().getSettings().isExcludeAfk() && harbor.getPlayerManager().isAfk(player));
+        pipeline.add("vanished", 1000, player -> harbor.getConfiguration().getSettings().isExcludeVanished() && isVanished(player));
+        pipeline.add(batchExclusions);
+
+        // Checks reschedule themselves, so the checker has to be marked as a repeating task by hand
+        markRepeating();
+        schedule(1L);
+    }
 
-        int interval = harbor.getConfiguration().getInteger("interval");
-        // Default to 1 if its invalid
-        if (interval <= 0)
-            interval = 1;
-        SchedulerUtils.runTaskTimerAsynchronously(this, 1L, interval * 20L);
+    /**
+     * Stops checking; any check that is already scheduled won't run.
+     */
+    @Override
+    public synchronized void cancel() {
+        super.cancel();
+        generation.incrementAndGet();
     }
 
     @Override
     public void run() {
-        Bukkit.getWorlds().stream()
-                .filter(this::validateWorld)
-                .forEach(this::checkWorld);
+        boolean woken = wakePending.getAndSet(false);
+        try {
+            if (aggregator != null) {
+                runAggregated();
+            } else {
+                capture();
+            }
+        } finally {
+            long delay = computeDelay();
+
+            // On Folia, a wake-up only starts a new aggregation round, so collect it as soon as it completes
+            if (woken && aggregator != null) {
+                delay = Math.min(delay, 2L);
+            }
+
+            nextDelay = delay;
+            schedule(delay);
+        }
     }
 
     /**
-     * Checks if a given world is applicable for night skipping.
+     * Schedules the next check on the main thread (or the global region on Folia), replacing any check that
+     * is already scheduled.
+     *
+     * @param delay The delay in ticks before the check runs.
+     */
+    private void schedule(long delay) {
+        if (isCancelled()) {
+            return;
+        }
+
+        long scheduled = generation.incrementAndGet();
+        scheduler.runTaskLater(null, () -> {
+            // A newer check has been scheduled in the meantime (i.e. by a wake-up)
+            if (generation.get() == scheduled) {
+                run();
+            }
+        }, delay);
+    }
+
+    /**
+     * Runs a check on the next tick instead of waiting for the scheduled one, i.e. because a player entered or
+     * left a bed. Wake-ups within the same tick are coalesced into a single check. Safe to call from any thread.
+     */
+    public void wake() {
+        idleChecks = 0;
+        if (wakePending.compareAndSet(false, true)) {
+            schedule(1L);
+        }
+    }
+
+    /**
+     * Determines the delay until the next check: the configured interval while players are sleeping or a world
+     * is skipping, a growing multiple of it while nobody is in bed at night, and the time until dusk while it is
+     * day in every world. A thunderstorm counts as night, as players can sleep through it.
+     *
+     * @return The delay in ticks before the next check.
+     */
+    private long computeDelay() {
+        long interval = harbor.getConfiguration().getSettings().getInterval() * 20L;
+        long delay = MAX_DELAY;
+        boolean sleeping = false;
+
+        for (World world : harbor.getWorldRegistry().getEligibleWorlds()) {
+            if (isSkipping(world)) {
+                delay = Math.min(delay, interval);
+            } else if (!isSleepable(world)) {
+                delay = Math.min(delay, getTicksUntilNight(world));
+            } else if (harbor.getSleepIndex().getSleepingCount(world) > 0) {
+                sleeping = true;
+                delay = Math.min(delay, interval);
+            } else {
+                delay = Math.min(delay, interval << Math.min(idleChecks, MAX_BACKOFF));
+            }
+        }
+
+        idleChecks = sleeping ? 0 : idleChecks + 1;
+        return Math.max(1L, delay);
+    }
+
+    /**
+     * Predicts the amount of ticks until players can sleep in a given world.
+     *
+     * @param world The world to check.
+     *
+     * @return The amount of ticks until the next dusk, or {@link Long#MAX_VALUE} if the daylight cycle is disabled.
+     */
+    public long getTicksUntilNight(@NotNull World world) {
+        if (!Boolean.TRUE.equals(world.getGameRuleValue(GameRule.DO_DAYLIGHT_CYCLE))) {
+            return Long.MAX_VALUE;
+        }
+
+        long time = world.getTime() % DAY_LENGTH;
+        long ticks = time <= NIGHT_START ? NIGHT_START - time : DAY_LENGTH - time + NIGHT_START;
+        return ticks + 1;
+    }
+
+    /**
+     * @return The delay in ticks that was chosen for the next check.
+     */
+    public long getNextDelay() {
+        return nextDelay;
+    }
+
+    /**
+     * @return The scheduler running the checks and night skips.
+     */
+    @NotNull
+    public HarborScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Runs a check on Folia, where players are sampled on their own region threads (see
+     * {@link RegionSleepAggregator}) and the global region only combines the totals into the capture buffer.
+     * Like on Paper and Spigot, the buffer is then computed asynchronously and the results applied globally.
+     */
+    private void runAggregated() {
+        if (!computing.compareAndSet(false, true)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        aggregator.nextCycle();
+        if (++checks >= harbor.getConfiguration().getSettings().getReconcileInterval()) {
+            checks = 0;
+            pipeline.reorder();
+            aggregator.reconcile();
+        }
+
+        buffer.clear();
+        for (World world : harbor.getWorldRegistry().getEligibleWorlds()) {
+            trackWorld(world);
+            if (validateWorld(world)) {
+                batchExclusions.refresh(world);
+                buffer.add(world, collectSnapshot(world));
+            } else {
+                settleWorld(world);
+            }
+        }
+        captureNanos = System.nanoTime() - start;
+
+        scheduler.runTaskAsynchronously(this::compute);
+    }
+
+    /**
+     * The first phase of a check on Paper and Spigot: copies the state of every applicable world into the
+     * capture buffer on the main thread, then hands the buffer to {@link #compute()} on an async thread.
+     * A new capture is skipped while the previous check is still being computed or applied.
+     */
+    private void capture() {
+        if (!computing.compareAndSet(false, true)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        if (++checks >= harbor.getConfiguration().getSettings().getReconcileInterval()) {
+            checks = 0;
+            pipeline.reorder();
+            for (World world : harbor.getWorldRegistry().getEligibleWorlds()) {
+                harbor.getSleepIndex().reconcile(world);
+                harbor.getExclusionIndex().reconcile(world);
+            }
+        }
+
+        buffer.clear();
+        for (World world : harbor.getWorldRegistry().getEligibleWorlds()) {
+            trackWorld(world);
+            if (validateWorld(world)) {
+                batchExclusions.refresh(world);
+                buffer.add(world, takeSnapshot(world));
+            } else {
+                settleWorld(world);
+            }
+        }
+        captureNanos = System.nanoTime() - start;
+
+        scheduler.runTaskAsynchronously(this::compute);
+    }
+
+    /**
+     * The second phase of a check: evaluates the thresholds and renders the messages for every captured world
+     * off the main thread, and passes the resulting actions back to the main thread in a single task.
+     */
+    private void compute() {
+        List<Runnable> actions = new ArrayList<>();
+        try {
+            for (int i = 0; i < buffer.size; i++) {
+                checkWorld(buffer.worlds[i], buffer.snapshots[i], actions);
+            }
+        } finally {
+            // Don't keep the captured worlds reachable until the next check, they may be unloaded in between
+            buffer.clear();
+            scheduler.runTask(null, () -> apply(actions));
+        }
+    }
+
+    /**
+     * The last phase of a check: applies the computed actions on the main thread.
+     *
+     * @param actions The actions to apply.
+     */
+    private void apply(@NotNull List<Runnable> actions) {
+        long start = System.nanoTime();
+        try {
+            actions.forEach(Runnable::run);
+        } finally {
+            applyNanos = System.nanoTime() - start;
+            computing.set(false);
+        }
+    }
+
+    /**
+     * @return The main thread time spent capturing world state during the last check, in nanoseconds.
+     */
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /**
+     * @return The main thread time spent applying the results of the last check, in nanoseconds.
+     */
+    public long getApplyNanos() {
+        return applyNanos;
+    }
+
+    /**
+     * Checks if a given eligible world is applicable for night skipping.
      *
      * @param world The world to check.
      *
      * @return Whether Harbor should run the night skipping check below.
      */
     private boolean validateWorld(@NotNull World world) {
-        return !skippingWorlds.contains(world.getUID())
-                && !isBlacklisted(world)
-                && isNight(world);
+        return !getSkipState(world).isSkipping()
+                && isSleepable(world);
     }
 
     /**
-     * Checks if enough people are sleeping, and in the case there are, starts the night skip task.
+     * Checks if players can currently sleep in a given world: at night, or during a thunderstorm.
      *
      * @param world The world to check.
+     *
+     * @return Whether players can sleep in the provided world.
      */
-    private void checkWorld(@NotNull World world) {
-        Config config = harbor.getConfiguration();
-        Messages messages = harbor.getMessages();
+    public boolean isSleepable(@NotNull World world) {
+        return isNight(world) || world.isThundering();
+    }
 
-        int sleeping = getSleepingPlayers(world).size();
-        int needed = getNeeded(world);
+    /**
+     * Settles a world which isn't applicable for night skipping, i.e. because dawn came while players were still
+     * counted as sleeping: its count is dropped and its bossbar cleared. Worlds that are skipping the night are
+     * left alone, their bossbar is cleared once the skip finishes. Runs on the thread applying check results.
+     *
+     * @param world The world to settle.
+     */
+    private void settleWorld(@NotNull World world) {
+        if (getSkipState(world).isSkipping()) {
+            return;
+        }
 
-        if (sleeping < 1) {
-            messages.clearBar(world);
+        transition(world, SkipState.COUNTING, SkipState.IDLE);
+        harbor.getMessages().clearBar(world);
+    }
+
+    /**
+     * Checks if enough people are sleeping, and in the case there are, adds the actions to start the night skip
+     * task. Messages are rendered here, only their delivery is deferred to the actions.
+     *
+     * @param world    The world to check.
+     * @param snapshot The current snapshot of the world.
+     * @param actions  The list to add the resulting actions to; these must be run on the main thread.
+     */
+    private void checkWorld(@NotNull World world, @NotNull WorldSleepSnapshot snapshot, @NotNull List<Runnable> actions) {
+        HarborSettings settings = harbor.getConfiguration().getSettings();
+        Messages messages = harbor.getMessages();
+
+        if (snapshot.getSleeping() < 1) {
+            transition(world, SkipState.COUNTING, SkipState.IDLE);
+            actions.add(() -> messages.clearBar(world));
             return;
         }
 
-        if (needed > 0) {
-            double sleepingPercentage = Math.min(1, (double) sleeping / getSkipAmount(world));
+        transition(world, SkipState.IDLE, SkipState.COUNTING);
 
-            messages.sendActionBarMessage(world, config.getString("messages.actionbar.players-sleeping"));
-            messages.sendBossBarMessage(world, config.getString("messages.bossbar.players-sleeping.message"),
-                    config.getString("messages.bossbar.players-sleeping.color"), sleepingPercentage);
-        } else if (needed == 0) {
-            messages.sendActionBarMessage(world, config.getString("messages.actionbar.night-skipping"));
-            messages.sendBossBarMessage(world, config.getString("messages.bossbar.night-skipping.message"),
-                    config.getString("messages.bossbar.night-skipping.color"), 1);
+        boolean skipping = snapshot.getNeeded() == 0;
 
-            if (!config.getBoolean("night-skip.enabled")) {
-                return;
+        BaseComponent[] actionBar = messages.renderActionBarMessage(world,
+                skipping ? settings.getActionBarNightSkipping() : settings.getActionBarPlayersSleeping());
+        String bossBar = messages.renderBossBarMessage(world,
+                skipping ? settings.getBossBarNightSkipping() : settings.getBossBarPlayersSleeping());
+        BarColor color = skipping ? settings.getBossBarNightSkippingColor() : settings.getBossBarPlayersSleepingColor();
+        double progress = skipping ? 1 : snapshot.getProgress();
+
+        actions.add(() -> {
+            if (actionBar != null) {
+                messages.deliverActionBarMessage(world, actionBar);
+            }
+            if (bossBar != null) {
+                messages.deliverBossBarMessage(world, bossBar, color, progress);
             }
+        });
+
+        if (!skipping || !settings.isNightSkipEnabled()) {
+            return;
+        }
 
-            if (config.getBoolean("night-skip.instant-skip")) {
-                SchedulerUtils.runTask(null, () -> {
-                    world.setTime(config.getInteger("night-skip.daytime-ticks"));
+        if (settings.isInstantSkip()) {
+            actions.add(() -> {
+                if (beginSkip(world, SkipState.RESETTING)) {
+                    world.setTime(settings.getDaytimeTicks());
                     clearWeather(world);
                     resetStatus(world);
-                });
-                return;
-            }
-
-            skippingWorlds.add(world.getUID());
-            new AccelerateNightTask(harbor, this, world);
+                }
+            });
+            return;
         }
+
+        actions.add(() -> startAccelerating(world));
     }
 
     /**
@@ -120,8 +445,9 @@ public class Checker extends FoliaRunnable {
      *
      * @return Whether it is currently night in the provided world.
      */
-    private boolean isNight(@NotNull World world) {
-        return world.getTime() > 12950 || world.getTime() < 23950;
+    public boolean isNight(@NotNull World world) {
+        long time = world.getTime();
+        return time > NIGHT_START && time < NIGHT_END;
     }
 
     /**
@@ -130,15 +456,11 @@ public class Checker extends FoliaRunnable {
      * @param world The world to check.
      *
      * @return Whether a world is excluded from Harbor checks.
+     *
+     * @see xyz.nkomarn.harbor.util.WorldRegistry
      */
     public boolean isBlacklisted(@NotNull World world) {
-        boolean blacklisted = harbor.getConfiguration().getStringList("blacklisted-worlds").contains(world.getName());
-
-        if (harbor.getConfiguration().getBoolean("whitelist-mode")) {
-            return !blacklisted;
-        }
-
-        return blacklisted;
+        return !harbor.getWorldRegistry().isEligible(world);
     }
 
     /**
@@ -152,6 +474,73 @@ public class Checker extends FoliaRunnable {
         return player.getMetadata("vanished").stream().anyMatch(MetadataValue::asBoolean);
     }
 
+    /**
+     * Takes a fresh snapshot of a given world's sleep state from the sleep and exclusion indexes, and stores it
+     * as the world's current snapshot.
+     *
+     * @param world The world for which to take a snapshot.
+     *
+     * @return The new snapshot of the provided world.
+     */
+    @NotNull
+    public WorldSleepSnapshot takeSnapshot(@NotNull World world) {
+        WorldSleepSnapshot snapshot = new WorldSleepSnapshot(world.getUID(),
+                harbor.getSleepIndex().getPlayerCount(world),
+                harbor.getExclusionIndex().getExcludedCount(world),
+                harbor.getSleepIndex().getSleepingCount(world),
+                harbor.getConfiguration().getSettings().getPercentage());
+        snapshots.put(world.getUID(), snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Combines the last completed aggregation round of a given world into its current snapshot, and starts the
+     * next round. Only used on Folia, where players must be sampled on their own region threads.
+     *
+     * @param world The world for which to collect a snapshot.
+     *
+     * @return The latest aggregated snapshot of the provided world.
+     */
+    @NotNull
+    private WorldSleepSnapshot collectSnapshot(@NotNull World world) {
+        WorldSleepSnapshot snapshot = aggregator.collect(world);
+        aggregator.fanOut(world);
+
+        if (snapshot == null) {
+            return getSnapshot(world);
+        }
+
+        snapshots.put(world.getUID(), snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Returns the current snapshot of a given world's sleep state, taking one if none is present yet.
+     *
+     * @param world The world for which to return the snapshot.
+     *
+     * @return The current snapshot of the provided world.
+     */
+    @NotNull
+    public WorldSleepSnapshot getSnapshot(@NotNull World world) {
+        WorldSleepSnapshot snapshot = snapshots.get(world.getUID());
+        return snapshot == null ? takeSnapshot(world) : snapshot;
+    }
+
+    /**
+     * Updates the sleeping count of a given world's current snapshot, without re-evaluating its players.
+     *
+     * @param world The world for which to update the snapshot.
+     *
+     * @return The updated snapshot of the provided world.
+     */
+    @NotNull
+    public WorldSleepSnapshot refreshSleeping(@NotNull World world) {
+        int sleeping = harbor.getSleepIndex().getSleepingCount(world);
+        WorldSleepSnapshot snapshot = snapshots.computeIfPresent(world.getUID(), (uuid, current) -> current.withSleeping(sleeping));
+        return snapshot == null ? takeSnapshot(world) : snapshot;
+    }
+
     /**
      * Returns the amount of players that should be counted for Harbor's checks, ignoring excluded players.
      *
@@ -160,7 +549,7 @@ public class Checker extends FoliaRunnable {
      * @return The amount of players in a given world, minus excluded players.
      */
     public int getPlayers(@NotNull World world) {
-        return Math.max(0, world.getPlayers().size() - getExcluded(world).size());
+        return getSnapshot(world).getEligible();
     }
 
     /**
@@ -172,9 +561,18 @@ public class Checker extends FoliaRunnable {
      */
     @NotNull
     public List<Player> getSleepingPlayers(@NotNull World world) {
-        return world.getPlayers().stream()
-                .filter(player -> player.getPose() == Pose.SLEEPING)
-                .collect(toList());
+        return harbor.getSleepIndex().getSleepingPlayers(world);
+    }
+
+    /**
+     * Returns the amount of sleeping players in a given world.
+     *
+     * @param world The world in which to count sleeping players.
+     *
+     * @return The amount of currently sleeping players in the provided world.
+     */
+    public int getSleepingCount(@NotNull World world) {
+        return harbor.getSleepIndex().getSleepingCount(world);
     }
 
     /**
@@ -185,7 +583,7 @@ public class Checker extends FoliaRunnable {
      * @return The amount of players that need to sleep to skip the night.
      */
     public int getSkipAmount(@NotNull World world) {
-        return (int) Math.ceil(getPlayers(world) * (harbor.getConfiguration().getDouble("night-skip.percentage") / 100));
+        return getSnapshot(world).getSkipAmount();
     }
 
     /**
@@ -196,33 +594,29 @@ public class Checker extends FoliaRunnable {
      * @return The amount of players that still need to get into bed to start the night skipping task.
      */
     public int getNeeded(@NotNull World world) {
-        double percentage = harbor.getConfiguration().getDouble("night-skip.percentage");
-        return Math.max(0, (int) Math.ceil((getPlayers(world)) * (percentage / 100) - getSleepingPlayers(world).size()));
+        return getSnapshot(world).getNeeded();
     }
 
     /**
-     * Returns a list of players that are considered to be excluded from Harbor's player count checks.
+     * Checks if a given player is considered excluded from Harbor's checks by asking the providers, cheapest
+     * first, until one excludes the player. This is
+     * only used to (re-)evaluate players for the {@link xyz.nkomarn.harbor.util.ExclusionIndex}, which
+     * should be consulted instead.
      *
-     * @param world The world for which to check for excluded players.
+     * @param player The player to check.
      *
-     * @return A list of excluded players in the given world.
+     * @return Whether the given player is excluded.
      */
-    @NotNull
-    private List<Player> getExcluded(@NotNull World world) {
-        return world.getPlayers().stream()
-                .filter(this::isExcluded)
-                .collect(toList());
+    public boolean isExcluded(@NotNull Player player) {
+        return pipeline.isExcluded(player);
     }
 
     /**
-     * Checks if a given player is considered excluded from Harbor's checks.
-     *
-     * @param player The player to check.
-     *
-     * @return Whether the given player is excluded.
+     * @return The pipeline of exclusion providers, in the order they are asked.
      */
-    private boolean isExcluded(@NotNull Player player) {
-        return providers.stream().anyMatch(provider -> provider.isExcluded(player));
+    @NotNull
+    public ExclusionPipeline getExclusionPipeline() {
+        return pipeline;
     }
 
     /**
@@ -233,7 +627,75 @@ public class Checker extends FoliaRunnable {
      * @return Whether the night is currently skipping in the provided world.
      */
     public boolean isSkipping(@NotNull World world) {
-        return skippingWorlds.contains(world.getUID());
+        return getSkipState(world).isSkipping();
+    }
+
+    /**
+     * Returns the current night skipping state of a given world.
+     *
+     * @param world The world to check.
+     *
+     * @return The current state of the provided world.
+     */
+    @NotNull
+    public SkipState getSkipState(@NotNull World world) {
+        AtomicReference<SkipState> state = states.get(world.getUID());
+        return state == null ? SkipState.IDLE : state.get();
+    }
+
+    /**
+     * Starts tracking the state of a given world; only called with loaded worlds, on the thread that also
+     * handles world unloads. Only tracked worlds can change their state, so a task still running for a world
+     * after it was unloaded can't bring its state back.
+     *
+     * @param world The world to track.
+     */
+    private void trackWorld(@NotNull World world) {
+        UUID uuid = world.getUID();
+        if (!states.containsKey(uuid)) {
+            states.putIfAbsent(uuid, new AtomicReference<>(SkipState.IDLE));
+        }
+    }
+
+    /**
+     * Moves a world from one state into another, if it is currently in the expected state.
+     *
+     * @param world    The world to transition.
+     * @param expected The state the world is expected to be in.
+     * @param next     The state to move the world into.
+     *
+     * @return Whether the world was moved into the new state; never true for a world that is no longer tracked.
+     */
+    private boolean transition(@NotNull World world, @NotNull SkipState expected, @NotNull SkipState next) {
+        AtomicReference<SkipState> state = states.get(world.getUID());
+        return state != null && state.compareAndSet(expected, next);
+    }
+
+    /**
+     * Moves a world into a skipping state, unless it is skipping already. Only one caller can win this
+     * transition for a given night, so it guards the start of the night skip.
+     *
+     * @param world The world to transition.
+     * @param next  The skipping state to move the world into.
+     *
+     * @return Whether this caller moved the world into the skipping state; never true for a world that is no
+     * longer tracked.
+     */
+    private boolean beginSkip(@NotNull World world, @NotNull SkipState next) {
+        AtomicReference<SkipState> state = states.get(world.getUID());
+        if (state == null) {
+            return false;
+        }
+
+        while (true) {
+            SkipState current = state.get();
+            if (current.isSkipping()) {
+                return false;
+            }
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
     }
 
     /**
@@ -242,8 +704,19 @@ public class Checker extends FoliaRunnable {
      * @param world The world in which to force night skipping.
      */
     public void forceSkip(@NotNull World world) {
-        skippingWorlds.add(world.getUID());
-        new AccelerateNightTask(harbor, this, world);
+        trackWorld(world);
+        startAccelerating(world);
+    }
+
+    /**
+     * Marks a world as skipping and starts its night skip task.
+     *
+     * @param world The world in which to start skipping the night.
+     */
+    private void startAccelerating(@NotNull World world) {
+        if (beginSkip(world, SkipState.ACCELERATING)) {
+            accelerators.put(world.getUID(), new AccelerateNightTask(harbor, this, world, scheduler));
+        }
     }
 
     /**
@@ -252,11 +725,14 @@ public class Checker extends FoliaRunnable {
      * @param world The world for which to reset status.
      */
     public void resetStatus(@NotNull World world) {
+        accelerators.remove(world.getUID());
+        transition(world, SkipState.ACCELERATING, SkipState.RESETTING);
         wakeUpPlayers(world);
-        SchedulerUtils.runTaskLater(null, () -> {
-            skippingWorlds.remove(world.getUID());
+        scheduler.runTaskLater(null, () -> {
+            transition(world, SkipState.RESETTING, SkipState.IDLE);
+            harbor.getMessages().clearBar(world);
             harbor.getPlayerManager().clearCooldowns();
-            harbor.getMessages().sendRandomChatMessage(world, "messages.chat.night-skipped");
+            harbor.getMessages().sendRandomChatMessage(world, harbor.getConfiguration().getSettings().getNightSkippedMessages());
         }, 20L);
     }
 
@@ -278,13 +754,13 @@ public class Checker extends FoliaRunnable {
      */
     public void clearWeather(@NotNull World world) {
         ensureMain(() -> {
-            Config config = harbor.getConfiguration();
+            HarborSettings settings = harbor.getConfiguration().getSettings();
 
-            if (world.hasStorm() && config.getBoolean("night-skip.clear-rain")) {
+            if (world.hasStorm() && settings.isClearRain()) {
                 world.setStorm(false);
             }
 
-            if (world.isThundering() && config.getBoolean("night-skip.clear-thunder")) {
+            if (world.isThundering() && settings.isClearThunder()) {
                 world.setThundering(false);
             }
         });
@@ -296,25 +772,111 @@ public class Checker extends FoliaRunnable {
      * @param runnable The task to run on the server thread.
      */
     public void ensureMain(@NotNull Runnable runnable) {
-        if (!Bukkit.isPrimaryThread()) {
-            SchedulerUtils.runTask(null, runnable);
+        if (!scheduler.isPrimaryThread()) {
+            scheduler.runTask(null, runnable);
         } else {
             runnable.run();
         }
     }
 
+    @Override
+    public void clearWorld(@NotNull UUID world) {
+        AccelerateNightTask accelerator = accelerators.remove(world);
+        if (accelerator != null) {
+            accelerator.cancel();
+        }
+
+        states.remove(world);
+        snapshots.remove(world);
+        if (aggregator != null) {
+            aggregator.clearWorld(world);
+        }
+    }
+
+    @Override
+    public int getTrackedWorlds() {
+        return snapshots.size();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return (long) snapshots.size() * SNAPSHOT_BYTES + (long) states.size() * STATE_BYTES
+                + (long) accelerators.size() * ACCELERATOR_BYTES;
+    }
+
     /**
      * Adds an {@link ExclusionProvider}, which will be checked as a condition. All Exclusions will be ORed together
-     * on which to exclude a given player
+     * on which to exclude a given player, asking the cheapest providers first
      */
     public void addExclusionProvider(ExclusionProvider provider) {
-        providers.add(provider);
+        pipeline.add(provider);
+        harbor.getExclusionIndex().invalidateAll();
     }
 
     /**
      * Removes an {@link ExclusionProvider}
      */
     public void removeExclusionProvider(ExclusionProvider provider) {
-        providers.remove(provider);
+        pipeline.remove(provider);
+        harbor.getExclusionIndex().invalidateAll();
+    }
+
+    /**
+     * Adds a {@link BatchExclusionProvider}, which is asked for a whole world at once during checks. Its results
+     * are ORed together with all other exclusions once they arrive; checks never wait for them
+     */
+    public void addBatchExclusionProvider(BatchExclusionProvider provider) {
+        // On Folia, players can only be asked on their own threads, which the per-player pipeline already does
+        if (Harbor.usingFolia && provider instanceof BatchExclusionProvider.Adapter) {
+            addExclusionProvider(((BatchExclusionProvider.Adapter) provider).getProvider());
+            return;
+        }
+        batchExclusions.add(provider);
+    }
+
+    /**
+     * Removes a {@link BatchExclusionProvider}
+     */
+    public void removeBatchExclusionProvider(BatchExclusionProvider provider) {
+        if (Harbor.usingFolia && provider instanceof BatchExclusionProvider.Adapter) {
+            removeExclusionProvider(((BatchExclusionProvider.Adapter) provider).getProvider());
+            return;
+        }
+        if (batchExclusions.remove(provider)) {
+            harbor.getExclusionIndex().invalidateAll();
+        }
+    }
+
+    /**
+     * @return The cache holding the latest results of the batch exclusion providers.
+     */
+    @NotNull
+    public BatchExclusionCache getBatchExclusions() {
+        return batchExclusions;
+    }
+
+    /**
+     * A reusable buffer holding the worlds captured on the main thread for the async phase of a check.
+     */
+    private static final class CaptureBuffer {
+        private World[] worlds = new World[4];
+        private WorldSleepSnapshot[] snapshots = new WorldSleepSnapshot[4];
+        private int size;
+
+        void add(@NotNull World world, @NotNull WorldSleepSnapshot snapshot) {
+            if (size == worlds.length) {
+                worlds = Arrays.copyOf(worlds, size * 2);
+                snapshots = Arrays.copyOf(snapshots, size * 2);
+            }
+            worlds[size] = world;
+            snapshots[size] = snapshot;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(worlds, 0, size, null);
+            Arrays.fill(snapshots, 0, size, null);
+            size = 0;
+        }
     }
 }
@@ -0,0 +1,31 @@
+package xyz.nkomarn.harbor.task;
+
+/**
+ * The night skipping state of a single world. Transitions are made with compare-and-set by the {@link Checker},
+ * so only one thread can ever move a world into {@link #ACCELERATING}.
+ */
+public enum SkipState {
+    /**
+     * Nobody is sleeping in the world.
+     */
+    IDLE,
+    /**
+     * Players are sleeping, but not enough to skip the night yet.
+     */
+    COUNTING,
+    /**
+     * The night is being skipped by an {@link AccelerateNightTask}.
+     */
+    ACCELERATING,
+    /**
+     * The night has been skipped, and the world is waiting to return to {@link #IDLE}.
+     */
+    RESETTING;
+
+    /**
+     * @return Whether the night is being skipped (or was just skipped) in this state.
+     */
+    public boolean isSkipping() {
+        return this == ACCELERATING || this == RESETTING;
+    }
+}
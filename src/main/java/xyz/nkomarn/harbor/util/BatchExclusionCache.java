@@ -0,0 +1,225 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.api.BatchExclusionProvider;
+import xyz.nkomarn.harbor.api.ExclusionProvider;
+import xyz.nkomarn.harbor.folia.SchedulerUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Keeps the last completed result of every {@link BatchExclusionProvider}, per world. Requests are started by the
+ * checker and never waited for; when a result arrives, the players whose exclusion changed since the previous
+ * result are re-evaluated in the {@link ExclusionIndex}. The cache itself takes part in the
+ * {@link ExclusionPipeline} as a single, cheap provider.
+ */
+public final class BatchExclusionCache implements ExclusionProvider, WorldStateHolder {
+    // Rough sizes of a cached result and of one excluded player, for the retained heap estimate
+    private static final int RESULT_BYTES = 128;
+    private static final int PLAYER_BYTES = 64;
+
+    // A request that hasn't completed after this long no longer holds back new requests
+    private static final long REQUEST_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private final Harbor harbor;
+    private final List<Source> sources;
+
+    public BatchExclusionCache(@NotNull Harbor harbor) {
+        this.harbor = harbor;
+        this.sources = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Adds a batch provider; its results are used once its first request completes.
+     *
+     * @param provider The provider to add.
+     */
+    public synchronized void add(@NotNull BatchExclusionProvider provider) {
+        for (Source source : sources) {
+            if (source.provider == provider) {
+                return;
+            }
+        }
+        sources.add(new Source(provider));
+    }
+
+    /**
+     * Removes a batch provider along with its cached results.
+     *
+     * @param provider The provider to remove.
+     *
+     * @return Whether the provider was registered.
+     */
+    public synchronized boolean remove(@NotNull BatchExclusionProvider provider) {
+        return sources.removeIf(source -> source.provider == provider);
+    }
+
+    /**
+     * Requests fresh results for a given world from every provider that isn't still working on a previous
+     * request. Doesn't wait for any of them.
+     *
+     * @param world The world for which to request results.
+     */
+    public void refresh(@NotNull World world) {
+        if (sources.isEmpty()) {
+            return;
+        }
+
+        List<Player> players = new ArrayList<>();
+        for (UUID uuid : harbor.getSleepIndex().getPlayers(world)) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                players.add(player);
+            }
+        }
+
+        List<Player> view = Collections.unmodifiableList(players);
+        for (Source source : sources) {
+            source.request(world, view);
+        }
+    }
+
+    @Override
+    public boolean isExcluded(Player player) {
+        UUID world = player.getWorld().getUID();
+        UUID uuid = player.getUniqueId();
+
+        for (Source source : sources) {
+            Set<UUID> excluded = source.results.get(world);
+            if (excluded != null && excluded.contains(uuid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "batch";
+    }
+
+    @Override
+    public long getCost() {
+        return 100;
+    }
+
+    @Override
+    public void clearWorld(@NotNull UUID world) {
+        for (Source source : sources) {
+            source.results.remove(world);
+            source.pending.remove(world);
+        }
+    }
+
+    @Override
+    public int getTrackedWorlds() {
+        Set<UUID> worlds = new HashSet<>();
+        for (Source source : sources) {
+            worlds.addAll(source.results.keySet());
+        }
+        return worlds.size();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        long bytes = 0;
+        for (Source source : sources) {
+            for (Set<UUID> excluded : source.results.values()) {
+                bytes += RESULT_BYTES + (long) excluded.size() * PLAYER_BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Re-evaluates the exclusion state of a player on the thread owning it.
+     *
+     * @param uuid The unique id of the player.
+     */
+    private void invalidate(@NotNull UUID uuid) {
+        Player player = Bukkit.getPlayer(uuid);
+        if (player != null) {
+            SchedulerUtils.runAtEntity(player, () -> harbor.getExclusionIndex().invalidate(player), null);
+        }
+    }
+
+    /**
+     * A registered provider, along with its last completed result and outstanding request per world.
+     */
+    private final class Source {
+        private final BatchExclusionProvider provider;
+        private final Map<UUID, Set<UUID>> results = new ConcurrentHashMap<>();
+        private final Map<UUID, Long> pending = new ConcurrentHashMap<>();
+
+        Source(@NotNull BatchExclusionProvider provider) {
+            this.provider = provider;
+        }
+
+        void request(@NotNull World world, @NotNull List<Player> players) {
+            UUID worldId = world.getUID();
+            long now = System.nanoTime();
+
+            Long started = pending.putIfAbsent(worldId, now);
+            if (started != null) {
+                if (now - started < REQUEST_TIMEOUT || !pending.replace(worldId, started, now)) {
+                    return;
+                }
+            }
+
+            CompletableFuture<Set<UUID>> future;
+            try {
+                future = provider.getExcludedAsync(world, players);
+            } catch (Exception e) {
+                pending.remove(worldId, now);
+                harbor.getLogger().log(Level.WARNING, "Batch exclusion provider " + provider.getName() + " failed", e);
+                return;
+            }
+
+            future.whenComplete((excluded, throwable) -> {
+                pending.remove(worldId, now);
+
+                if (throwable != null) {
+                    harbor.getLogger().log(Level.WARNING, "Batch exclusion provider " + provider.getName() + " failed", throwable);
+                    return;
+                }
+
+                // The world may have been unloaded or the provider removed while the request was running
+                if (Bukkit.getWorld(worldId) == null || !sources.contains(this)) {
+                    return;
+                }
+
+                Set<UUID> updated = excluded == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(excluded));
+                Set<UUID> previous = results.put(worldId, updated);
+                if (previous == null) {
+                    previous = Collections.emptySet();
+                }
+
+                for (UUID uuid : updated) {
+                    if (!previous.contains(uuid)) {
+                        invalidate(uuid);
+                    }
+                }
+                for (UUID uuid : previous) {
+                    if (!updated.contains(uuid)) {
+                        invalidate(uuid);
+                    }
+                }
+            });
+        }
+    }
+}
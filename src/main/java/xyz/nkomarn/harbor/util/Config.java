@@ -1,6 +1,5 @@
 package xyz.nkomarn.harbor.util;
 
-import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
@@ -9,10 +8,12 @@ import java.util.List;
 
 public class Config {
     private final Harbor harbor;
+    private volatile HarborSettings settings;
 
     public Config(@NotNull Harbor harbor) {
         this.harbor = harbor;
         harbor.saveDefaultConfig();
+        this.settings = new HarborSettings(getConfig());
     }
 
     /**
@@ -30,6 +31,18 @@ public class Config {
      */
     public void reload() {
         harbor.reloadConfig();
+        settings = new HarborSettings(getConfig());
+    }
+
+    /**
+     * Returns the compiled settings of the currently loaded configuration. The returned object never changes;
+     * a reload swaps in a new one, so callers should not hold on to it across ticks.
+     *
+     * @return The current settings.
+     */
+    @NotNull
+    public HarborSettings getSettings() {
+        return settings;
     }
 
     /**
@@ -38,7 +51,7 @@ public class Config {
      */
     @NotNull
     public String getPrefix() {
-        return ChatColor.translateAlternateColorCodes('&', getString("messages.miscellaneous.chat-prefix"));
+        return settings.getPrefix();
     }
 
     /**
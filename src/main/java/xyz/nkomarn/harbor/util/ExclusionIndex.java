@@ -0,0 +1,239 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerGameModeChangeEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.folia.FoliaRunnable;
+import xyz.nkomarn.harbor.folia.SchedulerUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches which players are excluded from the sleep count, per world. A player's exclusion state is only
+ * re-evaluated against the {@link xyz.nkomarn.harbor.api.ExclusionProvider}s when something relevant changes.
+ * Changes Bukkit has no event for (permissions, vanish metadata) are picked up by re-evaluating every player on
+ * their own thread every few seconds; external providers can also call {@link #invalidate(Player)} directly.
+ */
+public class ExclusionIndex implements Listener, WorldStateHolder {
+    // Rough sizes of a world entry and of one excluded player, for the retained heap estimate
+    private static final int ENTRY_BYTES = 160;
+    private static final int PLAYER_BYTES = 128;
+    // The period in ticks at which every player is re-evaluated, for changes there is no event for
+    private static final long REFRESH_PERIOD = 100L;
+
+    private final Harbor harbor;
+    private final Map<UUID, WorldEntry> worlds;
+    private final Map<UUID, UUID> excludedPlayers;
+    private final Map<UUID, Refresher> refreshers;
+
+    public ExclusionIndex(@NotNull Harbor harbor) {
+        this.harbor = harbor;
+        this.worlds = new ConcurrentHashMap<>();
+        this.excludedPlayers = new ConcurrentHashMap<>();
+        this.refreshers = new ConcurrentHashMap<>();
+
+        // Populate the index with any players already online (i.e. after a reload)
+        invalidateAll();
+        Bukkit.getOnlinePlayers().forEach(this::startRefreshing);
+    }
+
+    /**
+     * Returns the amount of excluded players in a given world.
+     *
+     * @param world The world to check.
+     *
+     * @return The amount of players currently excluded from the sleep count in the provided world.
+     */
+    public int getExcludedCount(@NotNull World world) {
+        WorldEntry entry = worlds.get(world.getUID());
+        return entry == null ? 0 : entry.count.get();
+    }
+
+    /**
+     * Checks if a given player is currently indexed as excluded.
+     *
+     * @param player The player to check.
+     *
+     * @return Whether the player is excluded from the sleep count.
+     */
+    public boolean isExcluded(@NotNull Player player) {
+        return excludedPlayers.containsKey(player.getUniqueId());
+    }
+
+    /**
+     * Re-evaluates the exclusion state of a given player. External plugins should call this (through
+     * {@link Harbor#invalidateExclusion(Player)}) whenever something their provider depends on changes.
+     *
+     * @param player The player to re-evaluate.
+     */
+    public void invalidate(@NotNull Player player) {
+        setExcluded(player.getUniqueId(), harbor.getChecker().isExcluded(player) ? player.getWorld().getUID() : null);
+    }
+
+    /**
+     * Re-evaluates the exclusion state of every player in a given world.
+     *
+     * @param world The world to reconcile.
+     */
+    public void reconcile(@NotNull World world) {
+        world.getPlayers().forEach(this::invalidate);
+    }
+
+    /**
+     * Re-evaluates the exclusion state of every online player, i.e. after the configuration or the set of
+     * exclusion providers changed. Every player is re-evaluated on the thread owning them, so this is safe to
+     * call from any thread.
+     */
+    public void invalidateAll() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            SchedulerUtils.runAtEntity(player, () -> {
+                if (player.isOnline()) {
+                    invalidate(player);
+                }
+            }, null);
+        }
+    }
+
+    /**
+     * Moves a player into the excluded set of the given world, or out of the excluded sets entirely.
+     *
+     * @param player The unique id of the player to update.
+     * @param world  The world in which the player is excluded, or null if the player is not excluded.
+     */
+    private void setExcluded(@NotNull UUID player, @Nullable UUID world) {
+        UUID previous = world == null ? excludedPlayers.remove(player) : excludedPlayers.put(player, world);
+
+        if (previous != null && !previous.equals(world)) {
+            getEntry(previous).remove(player);
+        }
+
+        if (world != null) {
+            getEntry(world).add(player);
+        }
+    }
+
+    @Override
+    public void clearWorld(@NotNull UUID world) {
+        worlds.remove(world);
+        excludedPlayers.values().removeIf(world::equals);
+    }
+
+    @Override
+    public int getTrackedWorlds() {
+        return worlds.size();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        long bytes = 0;
+        for (WorldEntry entry : worlds.values()) {
+            bytes += ENTRY_BYTES + (long) entry.count.get() * PLAYER_BYTES;
+        }
+        return bytes;
+    }
+
+    @NotNull
+    private WorldEntry getEntry(@NotNull UUID world) {
+        return worlds.computeIfAbsent(world, uuid -> new WorldEntry());
+    }
+
+    /**
+     * Starts re-evaluating a given player periodically, on the thread owning them.
+     *
+     * @param player The player to refresh.
+     */
+    private void startRefreshing(@NotNull Player player) {
+        UUID uuid = player.getUniqueId();
+        Refresher refresher = new Refresher(uuid);
+        if (refreshers.putIfAbsent(uuid, refresher) == null) {
+            // Spread the refreshes of all players over the period
+            long delay = 1 + Math.floorMod(uuid.hashCode(), (int) REFRESH_PERIOD);
+            SchedulerUtils.runAtEntityTimer(player, refresher, () -> refreshers.remove(uuid, refresher), delay, REFRESH_PERIOD);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        invalidate(event.getPlayer());
+        startRefreshing(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        Refresher refresher = refreshers.remove(uuid);
+        if (refresher != null) {
+            refresher.cancel();
+        }
+        setExcluded(uuid, null);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChanged(PlayerChangedWorldEvent event) {
+        invalidate(event.getPlayer());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onGameModeChange(PlayerGameModeChangeEvent event) {
+        // The new game mode is only applied after the event, so re-evaluate on the next tick
+        Player player = event.getPlayer();
+        SchedulerUtils.runAtEntity(player, () -> {
+            if (player.isOnline()) {
+                invalidate(player);
+            }
+        }, null);
+    }
+
+    /**
+     * Re-evaluates a single player periodically; runs on the thread owning the player.
+     */
+    private final class Refresher extends FoliaRunnable {
+        private final UUID uuid;
+
+        private Refresher(@NotNull UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        @Override
+        public void run() {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                invalidate(player);
+            }
+        }
+    }
+
+    /**
+     * The excluded players of a single world.
+     */
+    private static final class WorldEntry {
+        private final Set<UUID> players = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger count = new AtomicInteger();
+
+        void add(@NotNull UUID uuid) {
+            if (players.add(uuid)) {
+                count.incrementAndGet();
+            }
+        }
+
+        void remove(@NotNull UUID uuid) {
+            if (players.remove(uuid)) {
+                count.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.api.ExclusionProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the registered {@link ExclusionProvider}s for a player, cheapest first, and stops at the first provider
+ * that excludes the player. Providers are ordered by their declared cost, or by their measured mean latency if
+ * they don't declare one; until a provider has been measured, it is assumed to be more expensive than the
+ * built-in ones. Every provider records its invocations, hits and a latency histogram, which are shown
+ * by {@code /harbor providers}.
+ */
+public final class ExclusionPipeline {
+    // Histogram buckets are powers of two in nanoseconds, the last bucket holds everything above ~1s
+    private static final int BUCKETS = 31;
+    // The cost assumed for a provider which should be measured, but hasn't been asked yet
+    private static final long UNMEASURED_COST = 10_000L;
+
+    private volatile Entry[] entries = new Entry[0];
+
+    /**
+     * Adds a provider under its own name and declared cost.
+     *
+     * @param provider The provider to add.
+     */
+    public void add(@NotNull ExclusionProvider provider) {
+        add(provider.getName(), provider.getCost(), provider);
+    }
+
+    /**
+     * Adds a provider under a given name and cost.
+     *
+     * @param name     The name to report the provider under.
+     * @param cost     The declared cost of the provider in nanoseconds, or a negative value to measure it.
+     * @param provider The provider to add.
+     */
+    public synchronized void add(@NotNull String name, long cost, @NotNull ExclusionProvider provider) {
+        for (Entry entry : entries) {
+            if (entry.provider == provider) {
+                return;
+            }
+        }
+
+        Entry[] updated = Arrays.copyOf(entries, entries.length + 1);
+        updated[entries.length] = new Entry(name, cost, provider);
+        entries = sort(updated);
+    }
+
+    /**
+     * Removes a provider from the pipeline.
+     *
+     * @param provider The provider to remove.
+     */
+    public synchronized void remove(@NotNull ExclusionProvider provider) {
+        List<Entry> updated = new ArrayList<>(Arrays.asList(entries));
+        if (updated.removeIf(entry -> entry.provider == provider)) {
+            entries = updated.toArray(new Entry[0]);
+        }
+    }
+
+    /**
+     * Re-sorts the providers by their latest measured cost; called periodically by the checker.
+     */
+    public synchronized void reorder() {
+        entries = sort(entries);
+    }
+
+    /**
+     * Checks if any provider excludes a given player, asking the cheapest providers first.
+     *
+     * @param player The player to check.
+     *
+     * @return Whether the player is excluded.
+     */
+    public boolean isExcluded(@NotNull Player player) {
+        for (Entry entry : entries) {
+            long start = System.nanoTime();
+            boolean excluded = entry.provider.isExcluded(player);
+            entry.record(System.nanoTime() - start, excluded);
+
+            if (excluded) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return An unmodifiable view of the providers, in the order they are asked.
+     */
+    @NotNull
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(Arrays.asList(entries));
+    }
+
+    /**
+     * Sorts providers by their cost into a new array. Measured costs keep changing while the providers are
+     * asked, so they are snapshot first; comparing live costs could break the contract of the sort.
+     *
+     * @param entries The providers to sort.
+     *
+     * @return A new array holding the providers, cheapest first.
+     */
+    @NotNull
+    private static Entry[] sort(@NotNull Entry[] entries) {
+        long[] costs = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            costs[i] = entries[i].getCost();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> costs[i]));
+
+        Entry[] sorted = new Entry[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            sorted[i] = entries[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * A provider in the pipeline, along with its statistics.
+     */
+    public static final class Entry {
+        private final String name;
+        private final long declaredCost;
+        private final ExclusionProvider provider;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        Entry(@NotNull String name, long declaredCost, @NotNull ExclusionProvider provider) {
+            this.name = name;
+            this.declaredCost = declaredCost;
+            this.provider = provider;
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos, boolean excluded) {
+            invocations.increment();
+            totalNanos.add(nanos);
+            if (excluded) {
+                hits.increment();
+            }
+
+            // Bucket i holds latencies below 2^(i + 1) nanoseconds
+            int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, nanos));
+            histogram[Math.min(bucket, BUCKETS - 1)].increment();
+        }
+
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Whether the cost of this provider is declared, rather than measured.
+         */
+        public boolean isCostDeclared() {
+            return declaredCost >= 0;
+        }
+
+        /**
+         * @return The declared cost of this provider, or its measured mean latency, in nanoseconds; a provider
+         * which hasn't been measured yet is given a fixed seed cost.
+         */
+        public long getCost() {
+            if (isCostDeclared()) {
+                return declaredCost;
+            }
+
+            long count = invocations.sum();
+            return count == 0 ? UNMEASURED_COST : totalNanos.sum() / count;
+        }
+
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        /**
+         * @return The amount of invocations in which this provider excluded the player.
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMeanNanos() {
+            long count = invocations.sum();
+            return count == 0 ? 0 : totalNanos.sum() / count;
+        }
+
+        /**
+         * Estimates a latency percentile from the histogram.
+         *
+         * @param percentile The percentile, between 0 and 1.
+         *
+         * @return The upper bound of the histogram bucket holding the percentile, in nanoseconds.
+         */
+        public long getPercentileNanos(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram[i].sum();
+                total += counts[i];
+            }
+
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= target && seen > 0) {
+                    return 1L << (i + 1);
+                }
+            }
+            return 0;
+        }
+    }
+}
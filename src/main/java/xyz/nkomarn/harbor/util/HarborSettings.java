@@ -0,0 +1,358 @@
+package xyz.nkomarn.harbor.util;
+
+import com.google.common.base.Enums;
+import com.google.common.base.Optional;
+import org.bukkit.ChatColor;
+import org.bukkit.GameMode;
+import org.bukkit.World;
+import org.bukkit.boss.BarColor;
+import org.bukkit.configuration.Configuration;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable, typed copy of Harbor's configuration. It is compiled once whenever the configuration is
+ * (re)loaded, so hot paths can read plain fields instead of looking up YAML paths.
+ *
+ * @see Config#getSettings()
+ */
+public final class HarborSettings {
+    private final boolean nightSkipEnabled;
+    private final double percentage;
+    private final int timeRate;
+    private final int daytimeTicks;
+    private final boolean instantSkip;
+    private final boolean proportionalAcceleration;
+    private final boolean clearRain;
+    private final boolean clearThunder;
+    private final boolean resetPhantomStatistic;
+
+    private final boolean ignoredPermission;
+    private final Set<GameMode> excludedGameModes;
+    private final boolean excludeVanished;
+    private final boolean excludeAfk;
+
+    private final boolean fallbackAfkEnabled;
+    private final boolean essentialsAfkEnabled;
+    private final int fallbackTimeout;
+    private final double movementTolerance;
+    private final double rotationTolerance;
+    private final boolean afkDemandDriven;
+
+    private final Set<String> blacklistedWorlds;
+    private final boolean whitelistMode;
+    private final Set<World.Environment> excludedEnvironments;
+
+    private final boolean chatEnabled;
+    private final int messageCooldown;
+    private final String playerSleepingMessage;
+    private final String playerLeftBedMessage;
+    private final List<String> nightSkippingMessages;
+    private final List<String> nightSkippedMessages;
+
+    private final boolean actionBarEnabled;
+    private final String actionBarPlayersSleeping;
+    private final String actionBarNightSkipping;
+
+    private final boolean bossBarEnabled;
+    private final String bossBarPlayersSleeping;
+    private final BarColor bossBarPlayersSleepingColor;
+    private final String bossBarNightSkipping;
+    private final BarColor bossBarNightSkippingColor;
+
+    private final String prefix;
+    private final String unrecognizedCommand;
+
+    private final int interval;
+    private final int reconcileInterval;
+    private final boolean debug;
+
+    public HarborSettings(@NotNull Configuration config) {
+        nightSkipEnabled = config.getBoolean("night-skip.enabled", false);
+        percentage = config.getDouble("night-skip.percentage", 0.0);
+        timeRate = config.getInt("night-skip.time-rate", 0);
+        daytimeTicks = config.getInt("night-skip.daytime-ticks", 0);
+        instantSkip = config.getBoolean("night-skip.instant-skip", false);
+        proportionalAcceleration = config.getBoolean("night-skip.proportional-acceleration", false);
+        clearRain = config.getBoolean("night-skip.clear-rain", false);
+        clearThunder = config.getBoolean("night-skip.clear-thunder", false);
+        resetPhantomStatistic = config.getBoolean("night-skip.reset-phantom-statistic", false);
+
+        ignoredPermission = config.getBoolean("exclusions.ignored-permission", true);
+        EnumSet<GameMode> gameModes = EnumSet.noneOf(GameMode.class);
+        for (GameMode gameMode : GameMode.values()) {
+            if (config.getBoolean("exclusions.exclude-" + gameMode.toString().toLowerCase(), false)) {
+                gameModes.add(gameMode);
+            }
+        }
+        excludedGameModes = Collections.unmodifiableSet(gameModes);
+        excludeVanished = config.getBoolean("exclusions.exclude-vanished", false);
+        excludeAfk = config.getBoolean("exclusions.exclude-afk", false);
+
+        fallbackAfkEnabled = config.getBoolean("afk-detection.fallback-enabled", true);
+        essentialsAfkEnabled = config.getBoolean("afk-detection.essentials-enabled", true);
+        fallbackTimeout = config.getInt("afk-detection.fallback-timeout", 15);
+        movementTolerance = Math.max(0.001, config.getDouble("afk-detection.movement-tolerance", 0.1));
+        rotationTolerance = Math.max(0.001, config.getDouble("afk-detection.rotation-tolerance", 1.0));
+        afkDemandDriven = config.getBoolean("afk-detection.demand-driven", true);
+
+        blacklistedWorlds = Collections.unmodifiableSet(new HashSet<>(config.getStringList("blacklisted-worlds")));
+        whitelistMode = config.getBoolean("whitelist-mode", false);
+        EnumSet<World.Environment> environments = EnumSet.noneOf(World.Environment.class);
+        for (String environment : config.getStringList("blacklisted-environments")) {
+            Optional<World.Environment> parsed = Enums.getIfPresent(World.Environment.class, environment.toUpperCase().trim());
+            if (parsed.isPresent()) {
+                environments.add(parsed.get());
+            }
+        }
+        excludedEnvironments = Collections.unmodifiableSet(environments);
+
+        chatEnabled = config.getBoolean("messages.chat.enabled", false);
+        messageCooldown = config.getInt("messages.chat.message-cooldown", 0);
+        playerSleepingMessage = config.getString("messages.chat.player-sleeping", "");
+        playerLeftBedMessage = config.getString("messages.chat.player-left-bed", "");
+        nightSkippingMessages = Collections.unmodifiableList(config.getStringList("messages.chat.night-skipping"));
+        nightSkippedMessages = Collections.unmodifiableList(config.getStringList("messages.chat.night-skipped"));
+
+        actionBarEnabled = config.getBoolean("messages.actionbar.enabled", false);
+        actionBarPlayersSleeping = config.getString("messages.actionbar.players-sleeping", "");
+        actionBarNightSkipping = config.getString("messages.actionbar.night-skipping", "");
+
+        bossBarEnabled = config.getBoolean("messages.bossbar.enabled", false);
+        bossBarPlayersSleeping = config.getString("messages.bossbar.players-sleeping.message", "");
+        bossBarPlayersSleepingColor = parseBarColor(config.getString("messages.bossbar.players-sleeping.color", ""));
+        bossBarNightSkipping = config.getString("messages.bossbar.night-skipping.message", "");
+        bossBarNightSkippingColor = parseBarColor(config.getString("messages.bossbar.night-skipping.color", ""));
+
+        prefix = ChatColor.translateAlternateColorCodes('&', config.getString("messages.miscellaneous.chat-prefix", ""));
+        unrecognizedCommand = config.getString("messages.miscellaneous.unrecognized-command", "");
+
+        // Default to 1 if its invalid
+        interval = Math.max(1, config.getInt("interval", 1));
+        reconcileInterval = Math.max(1, config.getInt("reconcile-interval", 60));
+        debug = config.getBoolean("debug", false);
+    }
+
+    /**
+     * Parses a bossbar color, defaulting to blue.
+     *
+     * @param color The name of the color.
+     *
+     * @return The parsed color.
+     */
+    @NotNull
+    public static BarColor parseBarColor(@NotNull String color) {
+        return Enums.getIfPresent(BarColor.class, color).or(BarColor.BLUE);
+    }
+
+    public boolean isNightSkipEnabled() {
+        return nightSkipEnabled;
+    }
+
+    public double getPercentage() {
+        return percentage;
+    }
+
+    public int getTimeRate() {
+        return timeRate;
+    }
+
+    public int getDaytimeTicks() {
+        return daytimeTicks;
+    }
+
+    public boolean isInstantSkip() {
+        return instantSkip;
+    }
+
+    public boolean isProportionalAcceleration() {
+        return proportionalAcceleration;
+    }
+
+    public boolean isClearRain() {
+        return clearRain;
+    }
+
+    public boolean isClearThunder() {
+        return clearThunder;
+    }
+
+    public boolean isResetPhantomStatistic() {
+        return resetPhantomStatistic;
+    }
+
+    public boolean isIgnoredPermission() {
+        return ignoredPermission;
+    }
+
+    /**
+     * @return An unmodifiable set of the game modes that are excluded from the sleep count.
+     */
+    @NotNull
+    public Set<GameMode> getExcludedGameModes() {
+        return excludedGameModes;
+    }
+
+    public boolean isExcludeVanished() {
+        return excludeVanished;
+    }
+
+    public boolean isExcludeAfk() {
+        return excludeAfk;
+    }
+
+    public boolean isFallbackAfkEnabled() {
+        return fallbackAfkEnabled;
+    }
+
+    public boolean isEssentialsAfkEnabled() {
+        return essentialsAfkEnabled;
+    }
+
+    /**
+     * @return The time in minutes until a player is considered AFK by the fallback detection.
+     */
+    public int getFallbackTimeout() {
+        return fallbackTimeout;
+    }
+
+    /**
+     * @return The distance in blocks a player has to move to count as active for the fallback detection.
+     */
+    public double getMovementTolerance() {
+        return movementTolerance;
+    }
+
+    /**
+     * @return The angle in degrees a player has to turn to count as active for the fallback detection.
+     */
+    public double getRotationTolerance() {
+        return rotationTolerance;
+    }
+
+    /**
+     * @return Whether the fallback detection only samples players in worlds where their AFK status can matter.
+     */
+    public boolean isAfkDemandDriven() {
+        return afkDemandDriven;
+    }
+
+    @NotNull
+    public Set<String> getBlacklistedWorlds() {
+        return blacklistedWorlds;
+    }
+
+    public boolean isWhitelistMode() {
+        return whitelistMode;
+    }
+
+    /**
+     * @return An unmodifiable set of the world environments Harbor ignores, regardless of the world list.
+     */
+    @NotNull
+    public Set<World.Environment> getExcludedEnvironments() {
+        return excludedEnvironments;
+    }
+
+    public boolean isChatEnabled() {
+        return chatEnabled;
+    }
+
+    public int getMessageCooldown() {
+        return messageCooldown;
+    }
+
+    @NotNull
+    public String getPlayerSleepingMessage() {
+        return playerSleepingMessage;
+    }
+
+    @NotNull
+    public String getPlayerLeftBedMessage() {
+        return playerLeftBedMessage;
+    }
+
+    @NotNull
+    public List<String> getNightSkippingMessages() {
+        return nightSkippingMessages;
+    }
+
+    @NotNull
+    public List<String> getNightSkippedMessages() {
+        return nightSkippedMessages;
+    }
+
+    public boolean isActionBarEnabled() {
+        return actionBarEnabled;
+    }
+
+    @NotNull
+    public String getActionBarPlayersSleeping() {
+        return actionBarPlayersSleeping;
+    }
+
+    @NotNull
+    public String getActionBarNightSkipping() {
+        return actionBarNightSkipping;
+    }
+
+    public boolean isBossBarEnabled() {
+        return bossBarEnabled;
+    }
+
+    @NotNull
+    public String getBossBarPlayersSleeping() {
+        return bossBarPlayersSleeping;
+    }
+
+    @NotNull
+    public BarColor getBossBarPlayersSleepingColor() {
+        return bossBarPlayersSleepingColor;
+    }
+
+    @NotNull
+    public String getBossBarNightSkipping() {
+        return bossBarNightSkipping;
+    }
+
+    @NotNull
+    public BarColor getBossBarNightSkippingColor() {
+        return bossBarNightSkippingColor;
+    }
+
+    /**
+     * @return The prefix for Harbor messages, with color codes already translated.
+     */
+    @NotNull
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @NotNull
+    public String getUnrecognizedCommand() {
+        return unrecognizedCommand;
+    }
+
+    /**
+     * @return The interval between checks in seconds, at least 1.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return The amount of checks between reconciliation passes, at least 1.
+     */
+    public int getReconcileInterval() {
+        return reconcileInterval;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+}
@@ -1,6 +1,5 @@
 package xyz.nkomarn.harbor.util;
 
-import com.google.common.base.Enums;
 import me.clip.placeholderapi.PlaceholderAPI;
 import net.md_5.bungee.api.ChatMessageType;
 import net.md_5.bungee.api.chat.BaseComponent;
@@ -15,35 +14,30 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerChangedWorldEvent;
-import org.bukkit.event.world.WorldLoadEvent;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import xyz.nkomarn.harbor.Harbor;
-import xyz.nkomarn.harbor.task.Checker;
+import xyz.nkomarn.harbor.api.WorldSleepSnapshot;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class Messages implements Listener {
+public class Messages implements Listener, WorldStateHolder {
+    // Rough size of a bossbar and its map entry, for the retained heap estimate
+    private static final int BAR_BYTES = 512;
 
     private final Harbor harbor;
     private final Config config;
     private final Random random;
-    private final HashMap<UUID, BossBar> bossBars;
+    private final Map<UUID, BossBar> bossBars;
     private final boolean papiPresent;
 
     public Messages(@NotNull Harbor harbor) {
         this.harbor = harbor;
         this.config = harbor.getConfiguration();
         this.random = new Random();
-        this.bossBars = new HashMap<>();
+        this.bossBars = new ConcurrentHashMap<>();
         this.papiPresent = harbor.getServer().getPluginManager().isPluginEnabled("PlaceholderAPI");
-
-        for (World world : Bukkit.getWorlds()) {
-            if (harbor.getChecker().isBlacklisted(world)) {
-                return;
-            }
-
-            registerBar(world);
-        }
     }
 
     /**
@@ -53,7 +47,7 @@ public class Messages implements Listener {
      * @param message The message to send.
      */
     public void sendWorldChatMessage(@NotNull World world, @NotNull String message) {
-        if (!config.getBoolean("messages.chat.enabled") || message.length() < 1) {
+        if (!config.getSettings().isChatEnabled() || message.length() < 1) {
             return;
         }
 
@@ -70,13 +64,37 @@ public class Messages implements Listener {
      * @param message The message to send.
      */
     public void sendActionBarMessage(@NotNull World world, @NotNull String message) {
-        if (!config.getBoolean("messages.actionbar.enabled") || message.length() < 1) {
-            return;
+        BaseComponent[] preparedMessage = renderActionBarMessage(world, message);
+        if (preparedMessage != null) {
+            deliverActionBarMessage(world, preparedMessage);
+        }
+    }
+
+    /**
+     * Prepares an actionbar message for a given world without sending it; safe to call off the main thread.
+     *
+     * @param world   The world context.
+     * @param message The message to prepare.
+     * @return The prepared message, or null if actionbar messages are disabled or the message is empty.
+     */
+    @Nullable
+    public BaseComponent[] renderActionBarMessage(@NotNull World world, @NotNull String message) {
+        if (!config.getSettings().isActionBarEnabled() || message.length() < 1) {
+            return null;
         }
 
-        BaseComponent[] preparedMessage = TextComponent.fromLegacyText(prepareMessage(world, message));
+        return TextComponent.fromLegacyText(prepareMessage(world, message));
+    }
+
+    /**
+     * Sends a prepared actionbar message to all players in a given world.
+     *
+     * @param world   The world context.
+     * @param message The prepared message to send.
+     */
+    public void deliverActionBarMessage(@NotNull World world, @NotNull BaseComponent[] message) {
         for (Player player : world.getPlayers()) {
-            player.spigot().sendMessage(ChatMessageType.ACTION_BAR, preparedMessage);
+            player.spigot().sendMessage(ChatMessageType.ACTION_BAR, message);
         }
     }
 
@@ -87,8 +105,16 @@ public class Messages implements Listener {
      * @param listLocation The location of the message list in the configuration.
      */
     public void sendRandomChatMessage(@NotNull World world, @NotNull String listLocation) {
-        List<String> messages = config.getStringList(listLocation);
+        sendRandomChatMessage(world, config.getStringList(listLocation));
+    }
 
+    /**
+     * Selects a random message from a list and sends it to the given world.
+     *
+     * @param world    The world context.
+     * @param messages The messages to choose from.
+     */
+    public void sendRandomChatMessage(@NotNull World world, @NotNull List<String> messages) {
         if (messages.size() < 1) {
             return;
         }
@@ -105,23 +131,57 @@ public class Messages implements Listener {
      * @param percentage The bossbar percentage to set.
      */
     public void sendBossBarMessage(@NotNull World world, @NotNull String message, @NotNull String color, double percentage) {
-        if (!config.getBoolean("messages.bossbar.enabled") || message.length() < 1) {
-            return;
+        String title = renderBossBarMessage(world, message);
+        if (title != null) {
+            deliverBossBarMessage(world, title, parseBarColor(color), percentage);
         }
+    }
 
-        BossBar bar = bossBars.get(world.getUID());
-
-        if (bar == null) {
-            return;
+    /**
+     * Prepares a bossbar title for a given world without setting it; safe to call off the main thread.
+     *
+     * @param world   The world context.
+     * @param message The message to prepare.
+     * @return The prepared title, or null if bossbar messages are disabled or the message is empty.
+     */
+    @Nullable
+    public String renderBossBarMessage(@NotNull World world, @NotNull String message) {
+        if (!config.getSettings().isBossBarEnabled() || message.length() < 1) {
+            return null;
         }
 
+        return prepareMessage(world, message);
+    }
+
+    /**
+     * Parses a bossbar color from the configuration, defaulting to blue.
+     *
+     * @param color The name of the color.
+     * @return The parsed color.
+     */
+    @NotNull
+    public BarColor parseBarColor(@NotNull String color) {
+        return HarborSettings.parseBarColor(color);
+    }
+
+    /**
+     * Sets a prepared title for the given world's bossbar.
+     *
+     * @param world      The world in which the bossbar exists.
+     * @param title      The prepared title to set.
+     * @param color      The bossbar color to set.
+     * @param percentage The bossbar percentage to set.
+     */
+    public void deliverBossBarMessage(@NotNull World world, @NotNull String title, @NotNull BarColor color, double percentage) {
         if (percentage == 0) {
-            bar.removeAll();
+            clearBar(world);
             return;
         }
 
-        bar.setTitle(harbor.getMessages().prepareMessage(world, message));
-        bar.setColor(Enums.getIfPresent(BarColor.class, color).or(BarColor.BLUE));
+        BossBar bar = registerBar(world);
+
+        bar.setTitle(title);
+        bar.setColor(color);
         bar.setProgress(percentage);
         world.getPlayers().forEach(bar::addPlayer);
     }
@@ -135,12 +195,12 @@ public class Messages implements Listener {
      */
     @NotNull
     public String prepareMessage(@NotNull World world, @NotNull String message) {
-        Checker checker = harbor.getChecker();
+        WorldSleepSnapshot snapshot = harbor.getChecker().getSnapshot(world);
         return ChatColor.translateAlternateColorCodes('&', message
-                .replace("[sleeping]", String.valueOf(checker.getSleepingPlayers(world).size()))
-                .replace("[players]", String.valueOf(checker.getPlayers(world)))
-                .replace("[needed]", String.valueOf(checker.getSkipAmount(world)))
-                .replace("[more]", String.valueOf(checker.getNeeded(world))));
+                .replace("[sleeping]", String.valueOf(snapshot.getSleeping()))
+                .replace("[players]", String.valueOf(snapshot.getEligible()))
+                .replace("[needed]", String.valueOf(snapshot.getSkipAmount()))
+                .replace("[more]", String.valueOf(snapshot.getNeeded())));
     }
 
     @NotNull
@@ -160,9 +220,11 @@ public class Messages implements Listener {
      * Creates a new bossbar for the given world if one isn't already present.
      *
      * @param world The world in which to create the bossbar.
+     * @return The bossbar of the given world.
      */
-    private void registerBar(@NotNull World world) {
-        bossBars.computeIfAbsent(world.getUID(), uuid -> Bukkit.createBossBar("", BarColor.WHITE, BarStyle.SOLID));
+    @NotNull
+    private BossBar registerBar(@NotNull World world) {
+        return bossBars.computeIfAbsent(world.getUID(), uuid -> Bukkit.createBossBar("", BarColor.WHITE, BarStyle.SOLID));
     }
 
     /**
@@ -174,13 +236,23 @@ public class Messages implements Listener {
         Optional.ofNullable(bossBars.get(world.getUID())).ifPresent(BossBar::removeAll);
     }
 
-    @EventHandler
-    public void onWorldLoad(@NotNull WorldLoadEvent event) {
-        registerBar(event.getWorld());
-    }
-
     @EventHandler
     public void onWorldChanged(PlayerChangedWorldEvent event) {
         Optional.ofNullable(bossBars.get(event.getFrom().getUID())).ifPresent(bossBar -> bossBar.removePlayer(event.getPlayer()));
     }
+
+    @Override
+    public void clearWorld(@NotNull UUID world) {
+        Optional.ofNullable(bossBars.remove(world)).ifPresent(BossBar::removeAll);
+    }
+
+    @Override
+    public int getTrackedWorlds() {
+        return bossBars.size();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return (long) bossBars.size() * BAR_BYTES;
+    }
 }
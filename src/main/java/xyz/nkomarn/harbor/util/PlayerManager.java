@@ -2,32 +2,56 @@ package xyz.nkomarn.harbor.util;
 
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.jetbrains.annotations.NotNull;
 import xyz.nkomarn.harbor.Harbor;
 import xyz.nkomarn.harbor.api.AFKProvider;
 import xyz.nkomarn.harbor.api.LogicType;
+import xyz.nkomarn.harbor.folia.SchedulerUtils;
 import xyz.nkomarn.harbor.provider.DefaultAFKProvider;
 import xyz.nkomarn.harbor.provider.EssentialsAFKProvider;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PlayerManager implements Listener {
-    private final Map<UUID, Instant> cooldowns;
+    private static final AFKProvider[] NO_PROVIDERS = new AFKProvider[0];
+
+    private final Harbor harbor;
+    private final Map<UUID, Long> cooldowns;
     private final Set<AFKProvider> andedProviders;
     private final Set<AFKProvider> oredProviders;
     private final DefaultAFKProvider defaultProvider;
 
+    // Every provider owns one bit; a player's pushed AFK states are kept as a mask of those bits
+    private final Map<AFKProvider, Integer> providerBits;
+    private final Set<AFKProvider> pushingProviders;
+    private final Map<UUID, AtomicLong> afkStates;
+    private volatile long andMask;
+    private volatile long orMask;
+    private volatile long pushMask;
+    private volatile AFKProvider[] polledAnd = NO_PROVIDERS;
+    private volatile AFKProvider[] polledOr = NO_PROVIDERS;
+
     public PlayerManager(@NotNull Harbor harbor) {
-        this.cooldowns = new HashMap<>();
+        this.harbor = harbor;
+        this.cooldowns = new ConcurrentHashMap<>();
         this.andedProviders = new HashSet<>();
         this.oredProviders = new HashSet<>();
+        this.providerBits = new HashMap<>();
+        this.pushingProviders = new HashSet<>();
+        this.afkStates = new ConcurrentHashMap<>();
         this.defaultProvider = new DefaultAFKProvider(harbor);
 
         updateListeners();
@@ -44,22 +68,75 @@ public class PlayerManager implements Listener {
      *
      * @param player The player for which to return cooldown time.
      *
-     * @return The player's last cooldown time.
+     * @return The tick of the player's last cooldown, or {@link Long#MIN_VALUE} if there is none.
      */
+    public long getCooldownTick(@NotNull Player player) {
+        return cooldowns.getOrDefault(player.getUniqueId(), Long.MIN_VALUE);
+    }
+
+    /**
+     * Gets the last tracked cooldown time for a given player, converted from ticks into wall clock time.
+     *
+     * @param player The player for which to return cooldown time.
+     *
+     * @return The player's last cooldown time, or {@link Instant#MIN} if there is none.
+     *
+     * @deprecated Cooldowns are counted in ticks; use {@link #getCooldownTick(Player)} instead.
+     */
+    @Deprecated
+    @NotNull
     public Instant getCooldown(@NotNull Player player) {
-        return cooldowns.getOrDefault(player.getUniqueId(), Instant.MIN);
+        long cooldown = getCooldownTick(player);
+        if (cooldown == Long.MIN_VALUE) {
+            return Instant.MIN;
+        }
+        return Instant.now().plusMillis((cooldown - SchedulerUtils.getClock().getTick()) * 50L);
     }
 
     /**
      * Sets a player's cooldown to a specific, fixed value.
      *
      * @param player   The player for which to set cooldown.
-     * @param cooldown The cooldown value.
+     * @param cooldown The tick of the cooldown, as counted by {@link SchedulerUtils#getClock()}.
      */
-    public void setCooldown(@NotNull Player player, Instant cooldown) {
+    public void setCooldown(@NotNull Player player, long cooldown) {
         cooldowns.put(player.getUniqueId(), cooldown);
     }
 
+    /**
+     * Sets a player's cooldown to a specific, fixed value, converted from wall clock time into ticks.
+     *
+     * @param player   The player for which to set cooldown.
+     * @param cooldown The cooldown value.
+     *
+     * @deprecated Cooldowns are counted in ticks; use {@link #setCooldown(Player, long)} instead.
+     */
+    @Deprecated
+    public void setCooldown(@NotNull Player player, @NotNull Instant cooldown) {
+        Instant now = Instant.now();
+        long ticks;
+        try {
+            ticks = Duration.between(now, cooldown).toMillis() / 50L;
+        } catch (ArithmeticException e) {
+            // Too far from now to count in ticks (i.e. Instant.MIN); such a cooldown has long passed or never will
+            ticks = cooldown.isBefore(now) ? Long.MIN_VALUE / 2 : Long.MAX_VALUE / 2;
+        }
+        setCooldown(player, SchedulerUtils.getClock().getTick() + ticks);
+    }
+
+    /**
+     * Checks if a player's last cooldown is more recent than a given amount of ticks.
+     *
+     * @param player   The player to check.
+     * @param duration The duration of the cooldown in ticks.
+     *
+     * @return Whether the player is still under cooldown.
+     */
+    public boolean isOnCooldown(@NotNull Player player, long duration) {
+        Long cooldown = cooldowns.get(player.getUniqueId());
+        return cooldown != null && SchedulerUtils.getClock().getTick() - cooldown < duration;
+    }
+
     /**
      * Resets every players' message cooldown.
      */
@@ -75,18 +152,87 @@ public class PlayerManager implements Listener {
      * @return Whether the player is considered AFK.
      */
     public boolean isAfk(@NotNull Player player) {
+        long and = andMask;
+        long or = orMask;
+
         // If there are no providers registered, we go to the default provider
-        if(oredProviders.isEmpty() && andedProviders.isEmpty()){
+        if (and == 0 && or == 0) {
             return defaultProvider.isAFK(player);
         }
-        return oredProviders.stream().anyMatch(provider -> provider.isAFK(player)) ||
-                (!andedProviders.isEmpty() && andedProviders.stream().allMatch(provider -> provider.isAFK(player)));
+
+        // Providers that push their state are answered from the mask, only the others are asked
+        long push = pushMask;
+        AtomicLong state = afkStates.get(player.getUniqueId());
+        long pushed = state == null ? 0 : state.get();
+
+        if ((pushed & or & push) != 0) {
+            return true;
+        }
+        for (AFKProvider provider : polledOr) {
+            if (provider.isAFK(player)) {
+                return true;
+            }
+        }
+
+        if (and == 0 || (pushed & and & push) != (and & push)) {
+            return false;
+        }
+        for (AFKProvider provider : polledAnd) {
+            if (!provider.isAFK(player)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Harbor's fallback AFK provider, which is only used while no other providers are registered.
+     */
+    @NotNull
+    public DefaultAFKProvider getDefaultProvider() {
+        return defaultProvider;
+    }
+
+    /**
+     * Sets the AFK state of a player for a given provider. Once a provider pushes its state, Harbor stops asking
+     * it through {@link AFKProvider#isAFK(Player)} and combines the pushed states instead. Safe to call from any
+     * thread.
+     *
+     * @param provider The registered {@link AFKProvider} the state belongs to.
+     * @param player   The player whose state changed.
+     * @param afk      Whether the provider considers the player AFK.
+     */
+    public void setAfkState(@NotNull AFKProvider provider, @NotNull Player player, boolean afk) {
+        long bit;
+        synchronized (this) {
+            Integer index = providerBits.get(provider);
+            if (index == null) {
+                throw new IllegalStateException("AFK provider is not registered");
+            }
+
+            bit = 1L << index;
+            if (pushingProviders.add(provider)) {
+                rebuildMasks();
+            }
+        }
+
+        AtomicLong state = afkStates.computeIfAbsent(player.getUniqueId(), uuid -> new AtomicLong());
+        long previous = afk ? state.getAndUpdate(mask -> mask | bit) : state.getAndUpdate(mask -> mask & ~bit);
+
+        if (((previous & bit) != 0) != afk) {
+            SchedulerUtils.runAtEntity(player, () -> {
+                if (player.isOnline()) {
+                    harbor.getExclusionIndex().invalidate(player);
+                }
+            }, null);
+        }
     }
 
     @EventHandler
     public void onQuit(@NotNull PlayerQuitEvent event) {
         UUID uuid = event.getPlayer().getUniqueId();
         cooldowns.remove(uuid);
+        afkStates.remove(uuid);
     }
 
 
@@ -96,7 +242,15 @@ public class PlayerManager implements Listener {
      * @param provider  The {@link AFKProvider} to be added
      * @param logicType The type of logic (And or Or, {@link LogicType}) to be used with the given provider
      */
-    public void addAfkProvider(@NotNull AFKProvider provider, @NotNull LogicType logicType) {
+    public synchronized void addAfkProvider(@NotNull AFKProvider provider, @NotNull LogicType logicType) {
+        if (!providerBits.containsKey(provider)) {
+            int index = Long.numberOfTrailingZeros(~(andMask | orMask));
+            if (index == Long.SIZE) {
+                throw new IllegalStateException("Too many AFK providers registered");
+            }
+            providerBits.put(provider, index);
+        }
+
         switch (logicType){
             case AND:
                 andedProviders.add(provider);
@@ -107,6 +261,7 @@ public class PlayerManager implements Listener {
             default:
                 throw new IllegalStateException("Invalid logic type specified");
         }
+        rebuildMasks();
         updateListeners();
     }
 
@@ -114,10 +269,60 @@ public class PlayerManager implements Listener {
      * Remove an AFK provider from Harbor, provided for external plugins.
      * @param provider the {@link AFKProvider} to be removed.
      */
-    public void removeAfkProvider(@NotNull AFKProvider provider) {
+    public synchronized void removeAfkProvider(@NotNull AFKProvider provider) {
         andedProviders.remove(provider);
         oredProviders.remove(provider);
+        pushingProviders.remove(provider);
+
+        Integer index = providerBits.remove(provider);
+        rebuildMasks();
+        if (index != null) {
+            // Clear the provider's states, so a provider registered later can reuse its bit
+            long bit = 1L << index;
+            afkStates.values().forEach(state -> state.getAndUpdate(mask -> mask & ~bit));
+        }
         updateListeners();
+
+        // Providers following events of their own (i.e. Essentials) would otherwise keep listening
+        if (provider instanceof Listener) {
+            HandlerList.unregisterAll((Listener) provider);
+        }
+
+        // Players excluded because of the removed provider's AFK states are no longer excluded
+        harbor.getExclusionIndex().invalidateAll();
+    }
+
+    /**
+     * Recomputes the provider masks and the arrays of providers that still have to be polled.
+     */
+    private void rebuildMasks() {
+        long and = 0;
+        long or = 0;
+        long push = 0;
+        List<AFKProvider> pollAnd = new ArrayList<>();
+        List<AFKProvider> pollOr = new ArrayList<>();
+
+        for (AFKProvider provider : andedProviders) {
+            and |= 1L << providerBits.get(provider);
+            if (!pushingProviders.contains(provider)) {
+                pollAnd.add(provider);
+            }
+        }
+        for (AFKProvider provider : oredProviders) {
+            or |= 1L << providerBits.get(provider);
+            if (!pushingProviders.contains(provider)) {
+                pollOr.add(provider);
+            }
+        }
+        for (AFKProvider provider : pushingProviders) {
+            push |= 1L << providerBits.get(provider);
+        }
+
+        polledAnd = pollAnd.toArray(NO_PROVIDERS);
+        polledOr = pollOr.toArray(NO_PROVIDERS);
+        pushMask = push;
+        andMask = and;
+        orMask = or;
     }
 
     private void updateListeners() {
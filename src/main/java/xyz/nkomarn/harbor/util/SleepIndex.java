@@ -0,0 +1,268 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Pose;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.PlayerBedEnterEvent;
+import org.bukkit.event.player.PlayerBedLeaveEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the online and sleeping players of every world, updated by events rather than by scanning
+ * each world on every check. A reconciliation pass can be run to correct any drift (e.g. players put to sleep
+ * by other plugins without firing a bed event).
+ */
+public class SleepIndex implements Listener, WorldStateHolder {
+    // Rough sizes of a world entry and of one tracked player, for the retained heap estimate
+    private static final int ENTRY_BYTES = 256;
+    private static final int PLAYER_BYTES = 64;
+
+    private final Map<UUID, WorldEntry> worlds;
+
+    public SleepIndex() {
+        this.worlds = new ConcurrentHashMap<>();
+
+        // Populate the index with any players already online (i.e. after a reload)
+        for (World world : Bukkit.getWorlds()) {
+            reconcile(world);
+        }
+    }
+
+    /**
+     * Returns the amount of online players in a given world.
+     *
+     * @param world The world to check.
+     *
+     * @return The amount of players currently tracked in the provided world.
+     */
+    public int getPlayerCount(@NotNull World world) {
+        WorldEntry entry = worlds.get(world.getUID());
+        return entry == null ? 0 : entry.playerCount.get();
+    }
+
+    /**
+     * Returns the amount of sleeping players in a given world.
+     *
+     * @param world The world to check.
+     *
+     * @return The amount of players currently tracked as sleeping in the provided world.
+     */
+    public int getSleepingCount(@NotNull World world) {
+        WorldEntry entry = worlds.get(world.getUID());
+        return entry == null ? 0 : entry.sleepingCount.get();
+    }
+
+    /**
+     * Returns the unique ids of all sleeping players in a given world.
+     *
+     * @param world The world to check.
+     *
+     * @return An unmodifiable view of the sleeping players' unique ids.
+     */
+    @NotNull
+    public Set<UUID> getSleeping(@NotNull World world) {
+        WorldEntry entry = worlds.get(world.getUID());
+        return entry == null ? Collections.emptySet() : Collections.unmodifiableSet(entry.sleeping);
+    }
+
+    /**
+     * Returns the unique ids of all players in a given world.
+     *
+     * @param world The world to check.
+     *
+     * @return An unmodifiable view of the players' unique ids.
+     */
+    @NotNull
+    public Set<UUID> getPlayers(@NotNull World world) {
+        WorldEntry entry = worlds.get(world.getUID());
+        return entry == null ? Collections.emptySet() : Collections.unmodifiableSet(entry.players);
+    }
+
+    /**
+     * Returns all sleeping players in a given world.
+     *
+     * @param world The world to check.
+     *
+     * @return A list of all players currently tracked as sleeping in the provided world.
+     */
+    @NotNull
+    public List<Player> getSleepingPlayers(@NotNull World world) {
+        WorldEntry entry = worlds.get(world.getUID());
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+
+        List<Player> players = new ArrayList<>(entry.sleepingCount.get());
+        for (UUID uuid : entry.sleeping) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                players.add(player);
+            }
+        }
+        return players;
+    }
+
+    /**
+     * Rebuilds the index for a given world from the actual player states, correcting any drift.
+     *
+     * @param world The world to reconcile.
+     */
+    public void reconcile(@NotNull World world) {
+        WorldEntry entry = getEntry(world.getUID());
+        Set<UUID> seen = new HashSet<>();
+
+        for (Player player : world.getPlayers()) {
+            UUID uuid = player.getUniqueId();
+            seen.add(uuid);
+            entry.addPlayer(uuid);
+            entry.setSleeping(uuid, player.getPose() == Pose.SLEEPING);
+        }
+
+        for (UUID uuid : entry.players) {
+            if (!seen.contains(uuid)) {
+                entry.removePlayer(uuid);
+            }
+        }
+    }
+
+    /**
+     * Updates the index entry of a single player from its actual state. On Folia, this must be called from
+     * the thread owning the player.
+     *
+     * @param player The player to update.
+     */
+    public void update(@NotNull Player player) {
+        WorldEntry entry = getEntry(player.getWorld().getUID());
+        entry.addPlayer(player.getUniqueId());
+        entry.setSleeping(player.getUniqueId(), player.getPose() == Pose.SLEEPING);
+    }
+
+    /**
+     * Removes a player from the index of a given world, i.e. when it is found to no longer be there.
+     *
+     * @param world  The world to remove the player from.
+     * @param player The unique id of the player to remove.
+     */
+    public void remove(@NotNull World world, @NotNull UUID player) {
+        getEntry(world.getUID()).removePlayer(player);
+    }
+
+    @Override
+    public void clearWorld(@NotNull UUID world) {
+        worlds.remove(world);
+    }
+
+    @Override
+    public int getTrackedWorlds() {
+        return worlds.size();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        long bytes = 0;
+        for (WorldEntry entry : worlds.values()) {
+            bytes += ENTRY_BYTES + (long) (entry.playerCount.get() + entry.sleepingCount.get()) * PLAYER_BYTES;
+        }
+        return bytes;
+    }
+
+    @NotNull
+    private WorldEntry getEntry(@NotNull UUID world) {
+        return worlds.computeIfAbsent(world, uuid -> new WorldEntry());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBedEnter(PlayerBedEnterEvent event) {
+        if (event.getBedEnterResult() != PlayerBedEnterEvent.BedEnterResult.OK) {
+            return;
+        }
+
+        Player player = event.getPlayer();
+        WorldEntry entry = getEntry(player.getWorld().getUID());
+        entry.addPlayer(player.getUniqueId());
+        entry.setSleeping(player.getUniqueId(), true);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBedLeave(PlayerBedLeaveEvent event) {
+        Player player = event.getPlayer();
+        getEntry(player.getWorld().getUID()).setSleeping(player.getUniqueId(), false);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeath(PlayerDeathEvent event) {
+        Player player = event.getEntity();
+        getEntry(player.getWorld().getUID()).setSleeping(player.getUniqueId(), false);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        getEntry(player.getWorld().getUID()).addPlayer(player.getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        Player player = event.getPlayer();
+        getEntry(player.getWorld().getUID()).removePlayer(player.getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChanged(PlayerChangedWorldEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        getEntry(event.getFrom().getUID()).removePlayer(uuid);
+        getEntry(event.getPlayer().getWorld().getUID()).addPlayer(uuid);
+    }
+
+    /**
+     * The tracked players of a single world. The counters are only ever changed alongside a successful set
+     * mutation, so repeated or out-of-order events cannot skew them.
+     */
+    private static final class WorldEntry {
+        private final Set<UUID> players = ConcurrentHashMap.newKeySet();
+        private final Set<UUID> sleeping = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger playerCount = new AtomicInteger();
+        private final AtomicInteger sleepingCount = new AtomicInteger();
+
+        void addPlayer(@NotNull UUID uuid) {
+            if (players.add(uuid)) {
+                playerCount.incrementAndGet();
+            }
+        }
+
+        void removePlayer(@NotNull UUID uuid) {
+            if (players.remove(uuid)) {
+                playerCount.decrementAndGet();
+            }
+            setSleeping(uuid, false);
+        }
+
+        void setSleeping(@NotNull UUID uuid, boolean state) {
+            if (state) {
+                if (sleeping.add(uuid)) {
+                    sleepingCount.incrementAndGet();
+                }
+            } else if (sleeping.remove(uuid)) {
+                sleepingCount.decrementAndGet();
+            }
+        }
+    }
+}
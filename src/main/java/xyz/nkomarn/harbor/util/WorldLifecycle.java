@@ -0,0 +1,57 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tears down all of Harbor's per-world state when a world is unloaded, so servers that create and unload many
+ * worlds don't accumulate state (or pin {@link org.bukkit.World} objects) for worlds that no longer exist.
+ * Components create their state lazily and register themselves here to have it released.
+ */
+public class WorldLifecycle implements Listener {
+    private final Map<String, WorldStateHolder> holders;
+
+    public WorldLifecycle() {
+        this.holders = new LinkedHashMap<>();
+    }
+
+    /**
+     * Registers a component whose per-world state should be released on world unload.
+     *
+     * @param name   The name to report the component under.
+     * @param holder The component.
+     */
+    public void register(@NotNull String name, @NotNull WorldStateHolder holder) {
+        holders.put(name, holder);
+    }
+
+    /**
+     * @return An unmodifiable view of the registered components, by name.
+     */
+    @NotNull
+    public Map<String, WorldStateHolder> getHolders() {
+        return Collections.unmodifiableMap(holders);
+    }
+
+    /**
+     * Releases the state of a given world in every registered component.
+     *
+     * @param world The unique id of the world.
+     */
+    public void clearWorld(@NotNull UUID world) {
+        holders.values().forEach(holder -> holder.clearWorld(world));
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        clearWorld(event.getWorld().getUID());
+    }
+}
@@ -0,0 +1,102 @@
+package xyz.nkomarn.harbor.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.jetbrains.annotations.NotNull;
+import xyz.nkomarn.harbor.Harbor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the worlds in which Harbor can skip the night, keyed by world id. Eligibility is only
+ * evaluated when a world loads or the configuration is reloaded, rather than on every check. Unloaded worlds
+ * are removed through the {@link WorldLifecycle}.
+ */
+public class WorldRegistry implements Listener, WorldStateHolder {
+    // Rough size of a registry entry, for the retained heap estimate
+    private static final int ENTRY_BYTES = 64;
+
+    private final Harbor harbor;
+    // Replaced as a whole on refresh, so concurrent readers never see a partially rebuilt registry
+    private volatile Map<UUID, World> eligibleWorlds;
+
+    public WorldRegistry(@NotNull Harbor harbor) {
+        this.harbor = harbor;
+        refresh();
+    }
+
+    /**
+     * Re-evaluates the eligibility of every loaded world, i.e. after the configuration was reloaded.
+     */
+    public void refresh() {
+        Map<UUID, World> worlds = new ConcurrentHashMap<>();
+        for (World world : Bukkit.getWorlds()) {
+            evaluate(worlds, world);
+        }
+        eligibleWorlds = worlds;
+    }
+
+    /**
+     * Checks if a given world is eligible for night skipping.
+     *
+     * @param world The world to check.
+     *
+     * @return Whether the world is loaded and not excluded by the configuration.
+     */
+    public boolean isEligible(@NotNull World world) {
+        return eligibleWorlds.containsKey(world.getUID());
+    }
+
+    /**
+     * @return An unmodifiable view of all currently eligible worlds.
+     */
+    @NotNull
+    public Collection<World> getEligibleWorlds() {
+        return Collections.unmodifiableCollection(eligibleWorlds.values());
+    }
+
+    /**
+     * Evaluates a given world against the configured world list and environments.
+     *
+     * @param eligibleWorlds The registry to update.
+     * @param world          The world to evaluate.
+     */
+    private void evaluate(@NotNull Map<UUID, World> eligibleWorlds, @NotNull World world) {
+        HarborSettings settings = harbor.getConfiguration().getSettings();
+        boolean listed = settings.getBlacklistedWorlds().contains(world.getName());
+
+        if (listed != settings.isWhitelistMode() || settings.getExcludedEnvironments().contains(world.getEnvironment())) {
+            eligibleWorlds.remove(world.getUID());
+        } else {
+            eligibleWorlds.put(world.getUID(), world);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        evaluate(eligibleWorlds, event.getWorld());
+    }
+
+    @Override
+    public void clearWorld(@NotNull UUID world) {
+        eligibleWorlds.remove(world);
+    }
+
+    @Override
+    public int getTrackedWorlds() {
+        return eligibleWorlds.size();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return (long) eligibleWorlds.size() * ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,29 @@
+package xyz.nkomarn.harbor.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * A component that keeps state per world, which has to be released when the world is unloaded.
+ *
+ * @see WorldLifecycle
+ */
+public interface WorldStateHolder {
+    /**
+     * Releases all state kept for the given world.
+     *
+     * @param world The unique id of the unloaded world.
+     */
+    void clearWorld(@NotNull UUID world);
+
+    /**
+     * @return The amount of worlds this component currently keeps state for.
+     */
+    int getTrackedWorlds();
+
+    /**
+     * @return A rough estimate of the heap retained by this component's per-world state, in bytes.
+     */
+    long getRetainedBytes();
+}
@@ -0,0 +1,106 @@
+package xyz.nkomarn.harbor.folia;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualHarborSchedulerTest {
+    private VirtualHarborScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new VirtualHarborScheduler();
+        SchedulerUtils.install(scheduler, Logger.getLogger("Harbor"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SchedulerUtils.getTasks().cancelAll();
+    }
+
+    @Test
+    void runsTasksInOrderOfDueTickThenSubmission() {
+        List<String> ran = new ArrayList<>();
+        SchedulerUtils.runTaskLater(null, () -> ran.add("late"), 5);
+        SchedulerUtils.runTask(null, () -> ran.add("first"));
+        SchedulerUtils.runTask(null, () -> ran.add("second"));
+
+        assertEquals(0, scheduler.advance(0));
+        assertEquals(2, scheduler.advance(1));
+        assertEquals(Arrays.asList("first", "second"), ran);
+
+        assertEquals(1, scheduler.advance(10));
+        assertEquals(Arrays.asList("first", "second", "late"), ran);
+        assertEquals(11, SchedulerUtils.getClock().getTick());
+    }
+
+    @Test
+    void repeatsTimersUntilCancelled() {
+        int[] runs = new int[1];
+        FoliaRunnable timer = new FoliaRunnable() {
+            @Override
+            public void run() {
+                if (++runs[0] == 3) {
+                    cancel();
+                }
+            }
+        };
+        SchedulerUtils.runTaskTimer(null, timer, 1, 20);
+        assertTrue(timer.isRepeating());
+        assertEquals(1, SchedulerUtils.getTasks().getTasks().size());
+
+        scheduler.advance(1000);
+        assertEquals(3, runs[0]);
+        assertTrue(timer.isCancelled());
+        assertEquals(0, scheduler.getPending());
+        assertTrue(SchedulerUtils.getTasks().getTasks().isEmpty());
+    }
+
+    @Test
+    void runsEntityTasksOnTheNextTick() {
+        // The virtual scheduler never looks at the entity, so a bare proxy will do
+        Player player = (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class}, (proxy, method, args) -> null);
+        boolean[] ran = new boolean[1];
+        assertTrue(SchedulerUtils.runAtEntity(player, () -> ran[0] = true, null));
+
+        scheduler.advance(0);
+        assertFalse(ran[0]);
+        scheduler.advance(1);
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    void completesSyncCallsOnceTheirTickRuns() {
+        CompletableFuture<Long> future = SchedulerUtils.callSyncMethod(null, () -> SchedulerUtils.getClock().getTick());
+        assertFalse(future.isDone());
+
+        scheduler.advance(1);
+        assertEquals(1L, future.join());
+    }
+
+    @Test
+    void coalescesQueuedTasksWithTheSameKey() {
+        int[] runs = new int[1];
+        Object key = new Object();
+        for (int i = 0; i < 5; i++) {
+            SchedulerUtils.queue(null, key, () -> runs[0]++);
+        }
+
+        scheduler.advance(1);
+        assertEquals(1, runs[0]);
+        assertEquals(4, SchedulerUtils.getWorkQueue().getCoalesced());
+        assertEquals(0, SchedulerUtils.getWorkQueue().getPending());
+    }
+}
@@ -0,0 +1,135 @@
+package xyz.nkomarn.harbor.task;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.WorldMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import org.bukkit.block.Block;
+import org.bukkit.event.player.PlayerBedEnterEvent;
+import org.bukkit.event.player.PlayerBedLeaveEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.nkomarn.harbor.Harbor;
+import xyz.nkomarn.harbor.folia.SchedulerUtils;
+import xyz.nkomarn.harbor.folia.VirtualHarborScheduler;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the {@link Checker} and {@link AccelerateNightTask} through simulated nights on a
+ * {@link VirtualHarborScheduler}; the mock server only provides the world and players, nothing runs on its
+ * scheduler.
+ */
+class NightSimulationTest {
+    private static final long DUSK = 14000;
+    private static final long DAY_LENGTH = 24000;
+
+    private ServerMock server;
+    private WorldMock world;
+    private Harbor harbor;
+    private VirtualHarborScheduler scheduler;
+    private Checker checker;
+
+    @BeforeEach
+    void setUp() {
+        server = MockBukkit.mock();
+        world = server.addSimpleWorld("world");
+        harbor = MockBukkit.load(Harbor.class);
+
+        // Only the sleep mechanics are simulated; messages, weather and statistics are left alone
+        harbor.getConfig().set("messages.chat.enabled", false);
+        harbor.getConfig().set("messages.actionbar.enabled", false);
+        harbor.getConfig().set("messages.bossbar.enabled", false);
+        harbor.getConfig().set("night-skip.clear-rain", false);
+        harbor.getConfig().set("night-skip.clear-thunder", false);
+        harbor.getConfig().set("night-skip.reset-phantom-statistic", false);
+        harbor.saveConfig();
+        harbor.getConfiguration().reload();
+
+        scheduler = new VirtualHarborScheduler();
+        SchedulerUtils.install(scheduler, harbor.getLogger());
+        harbor.getChecker().cancel();
+        checker = new Checker(harbor, scheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        checker.cancel();
+        SchedulerUtils.getTasks().cancelAll();
+        MockBukkit.unload();
+    }
+
+    @Test
+    void skipsEveryNightOnceEnoughPlayersSleep() {
+        PlayerMock sleeper = server.addPlayer();
+        server.addPlayer();
+        Block bed = world.getBlockAt(0, 64, 0);
+        long daytime = harbor.getConfiguration().getSettings().getDaytimeTicks();
+
+        for (int night = 0; night < 5; night++) {
+            world.setTime(DUSK);
+            server.getPluginManager().callEvent(new PlayerBedEnterEvent(sleeper, bed, PlayerBedEnterEvent.BedEnterResult.OK));
+            checker.wake();
+
+            // One of two players is enough with the default percentage
+            advanceUntil(() -> checker.isSkipping(world), 100);
+            advanceUntil(() -> checker.getSkipState(world) == SkipState.IDLE, DAY_LENGTH);
+
+            assertFalse(checker.isNight(world));
+            assertTrue(world.getTime() <= daytime);
+
+            server.getPluginManager().callEvent(new PlayerBedLeaveEvent(sleeper, bed, false));
+        }
+    }
+
+    @Test
+    void keepsTheNightWhileTooFewPlayersSleep() {
+        PlayerMock sleeper = server.addPlayer();
+        server.addPlayer();
+        server.addPlayer();
+        Block bed = world.getBlockAt(0, 64, 0);
+
+        world.setTime(DUSK);
+        server.getPluginManager().callEvent(new PlayerBedEnterEvent(sleeper, bed, PlayerBedEnterEvent.BedEnterResult.OK));
+        checker.wake();
+
+        scheduler.advance(200);
+        assertEquals(SkipState.COUNTING, checker.getSkipState(world));
+        assertEquals(DUSK, world.getTime());
+    }
+
+    @Test
+    void acceleratesForcedSkipsUntilDaytime() {
+        world.setTime(DUSK);
+        checker.forceSkip(world);
+        assertEquals(SkipState.ACCELERATING, checker.getSkipState(world));
+
+        // The time only moves while the night skip task runs
+        scheduler.advance(1);
+        assertTrue(world.getTime() > DUSK);
+
+        advanceUntil(() -> checker.getSkipState(world) == SkipState.RESETTING, DAY_LENGTH);
+        assertFalse(checker.isNight(world));
+
+        scheduler.advance(20);
+        assertEquals(SkipState.IDLE, checker.getSkipState(world));
+    }
+
+    /**
+     * Advances the scheduler tick by tick until a condition holds.
+     *
+     * @param condition The condition to wait for.
+     * @param limit     The most ticks to advance.
+     */
+    private void advanceUntil(BooleanSupplier condition, long limit) {
+        for (long ticks = 0; ticks < limit && !condition.getAsBoolean(); ticks++) {
+            scheduler.advance(1);
+        }
+        assertTrue(condition.getAsBoolean(), "Condition not met within " + limit + " ticks");
+    }
+}